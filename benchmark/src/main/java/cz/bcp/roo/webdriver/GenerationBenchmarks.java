@@ -0,0 +1,155 @@
+package cz.bcp.roo.webdriver;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.Path;
+
+/**
+ * Throughput of the add-on's code generation for entities of growing size.
+ * Run through {@link #main(String[])} the GC profiler is enabled as well, so
+ * every result comes with its allocation rate and bytes allocated per
+ * operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GenerationBenchmarks {
+
+    @Param({ "10", "80", "250", "1000" })
+    public int fieldCount;
+
+    private File workDirectory;
+    private SyntheticProject project;
+    private WebdriverOperationsImpl operations;
+    private WebdriverInitializerRegistryImpl initializerRegistry;
+    private WebdriverGenerationContext context;
+    private WebdriverFieldCacheImpl fieldCache;
+    private WebdriverTestOptions options;
+    private String testClassId;
+    private PhysicalTypeMetadata testClassMetadata;
+    private WebdriverAnnotationValues annotationValues;
+    private String metadataId;
+    private JavaType aspectName;
+
+    @Setup
+    public void setUp() throws Exception {
+        workDirectory = File.createTempFile("webdriver-benchmark", "");
+        workDirectory.delete();
+        workDirectory.mkdirs();
+
+        project = new SyntheticProject(fieldCount, workDirectory);
+        operations = project.createOperations();
+        initializerRegistry = new WebdriverInitializerRegistryImpl();
+        SyntheticProject.inject(initializerRegistry, "statistics", new WebdriverStatisticsImpl());
+        initializerRegistry.activate(null);
+        context = project.resolveContext();
+        fieldCache = new WebdriverFieldCacheImpl();
+        SyntheticProject.inject(fieldCache, "statistics", new WebdriverStatisticsImpl());
+        options = new WebdriverTestOptions();
+
+        testClassMetadata = project.getTestClassMetadata();
+        testClassId = testClassMetadata.getId();
+        annotationValues = new WebdriverAnnotationValues(testClassMetadata);
+        metadataId = WebdriverMetadata.createIdentifier(project.getTestClass(), project.getPath(Path.SRC_TEST_JAVA));
+        aspectName = new JavaType(project.getTestClass() + "_Roo_Webdriver");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(workDirectory);
+    }
+
+    /**
+     * The test values of all fields of the entity.
+     */
+    @Benchmark
+    public void initializers(final Blackhole blackhole) {
+        for (final FieldMetadata field : project.getFields()) {
+            blackhole.consume(initializerRegistry.getInitializer(field));
+        }
+    }
+
+    /**
+     * The lookup and analysis of the controller and its entity.
+     */
+    @Benchmark
+    public Object resolveContext() {
+        return project.resolveContext();
+    }
+
+    /**
+     * The same lookup of an unchanged entity whose analysis is cached.
+     */
+    @Benchmark
+    public Object resolveContextCached() {
+        return project.resolveContext(fieldCache);
+    }
+
+    /**
+     * The body of the test method of the generated class.
+     */
+    @Benchmark
+    public Object testMethodBody() {
+        return operations.getTestMethod(testClassId, context, options).build();
+    }
+
+    /**
+     * The per-field fill and verify methods of the test's ITD, including their
+     * test values, as the metadata provider produces them on every change of
+     * the entity.
+     */
+    @Benchmark
+    public Object itdMethods() {
+        final Map<JavaSymbolName, String> initializers = new HashMap<JavaSymbolName, String>();
+        for (final FieldMetadata field : context.getFields()) {
+            initializers.put(field.getFieldName(), initializerRegistry.getInitializer(field));
+        }
+        return new WebdriverMetadata(metadataId, aspectName, testClassMetadata, annotationValues,
+                project.getEntity(), context.getFields(), initializers, WebdriverViewIds.NONE).getMemberHoldingTypeDetails();
+    }
+
+    /**
+     * The whole <code>webdriver create-test</code> command, from looking up the
+     * controller to handing the test class over to be written.
+     */
+    @Benchmark
+    public void createTestClass() {
+        operations.createTestClass(project.getController(), options);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(GenerationBenchmarks.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,284 @@
+package cz.bcp.roo.webdriver;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static org.springframework.roo.model.JavaType.BOOLEAN_OBJECT;
+import static org.springframework.roo.model.JavaType.INT_OBJECT;
+import static org.springframework.roo.model.JavaType.LONG_OBJECT;
+import static org.springframework.roo.model.JavaType.STRING;
+import static org.springframework.roo.model.JdkJavaType.BIG_DECIMAL;
+import static org.springframework.roo.model.JdkJavaType.DATE;
+import static org.springframework.roo.model.Jsr303JavaType.MIN;
+import static org.springframework.roo.model.Jsr303JavaType.PAST;
+import static org.springframework.roo.model.SpringJavaType.DATE_TIME_FORMAT;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Version;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.addon.web.mvc.controller.details.WebMetadataService;
+import org.springframework.roo.addon.web.mvc.controller.scaffold.WebScaffoldAnnotationValues;
+import org.springframework.roo.addon.web.mvc.controller.scaffold.WebScaffoldMetadata;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.TypeManagementService;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.DefaultPhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaPackage;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.PathResolver;
+import org.springframework.roo.project.ProjectOperations;
+
+/**
+ * A scaffolded controller and its form backing entity with a given number of
+ * fields, together with in-memory stand-ins for the Roo services the add-on
+ * looks them up in. The stand-ins do not record their invocations, so they
+ * neither slow down nor leak memory over a long benchmark run.
+ */
+final class SyntheticProject {
+
+    private static final String MODULE = "";
+    private static final JavaPackage TOP_LEVEL_PACKAGE = new JavaPackage("com.example.synthetic");
+
+    private final File workDirectory;
+    private final JavaType controller;
+    private final JavaType entity;
+    private final List<FieldMetadata> fields;
+    private final ClassOrInterfaceTypeDetails controllerTypeDetails;
+    private final ClassOrInterfaceTypeDetails entityTypeDetails;
+    private final MetadataService metadataService;
+    private final TypeLocationService typeLocationService;
+    private final MemberDetailsScanner memberDetailsScanner;
+    private final WebMetadataService webMetadataService;
+    private final ProjectOperations projectOperations;
+
+    /**
+     * Creates the project.
+     *
+     * @param fieldCount the number of fields of the entity
+     * @param workDirectory where files written by the add-on end up
+     */
+    SyntheticProject(final int fieldCount, final File workDirectory) {
+        this.workDirectory = workDirectory;
+        controller = new JavaType(TOP_LEVEL_PACKAGE + ".web.SyntheticController");
+        entity = new JavaType(TOP_LEVEL_PACKAGE + ".domain.Synthetic");
+
+        final String entityId = PhysicalTypeIdentifier.createIdentifier(entity, getPath(Path.SRC_MAIN_JAVA));
+        final List<FieldMetadataBuilder> fieldBuilders = new ArrayList<FieldMetadataBuilder>();
+        final List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+        for (int i = 0; i < fieldCount; i++) {
+            final FieldMetadataBuilder fieldBuilder = getField(entityId, i);
+            fieldBuilders.add(fieldBuilder);
+            fields.add(fieldBuilder.build());
+        }
+        this.fields = Collections.unmodifiableList(fields);
+
+        final ClassOrInterfaceTypeDetailsBuilder entityBuilder = new ClassOrInterfaceTypeDetailsBuilder(
+                entityId, Modifier.PUBLIC, entity, PhysicalTypeCategory.CLASS);
+        entityBuilder.setDeclaredFields(fieldBuilders);
+        entityTypeDetails = entityBuilder.build();
+        controllerTypeDetails = new ClassOrInterfaceTypeDetailsBuilder(
+                PhysicalTypeIdentifier.createIdentifier(controller, getPath(Path.SRC_MAIN_JAVA)),
+                Modifier.PUBLIC, controller, PhysicalTypeCategory.CLASS).build();
+
+        // Scaffold metadata of the controller
+        final WebScaffoldAnnotationValues annotationValues = standIn(WebScaffoldAnnotationValues.class);
+        when(annotationValues.getFormBackingObject()).thenReturn(entity);
+        when(annotationValues.getPath()).thenReturn("synthetics");
+        when(annotationValues.isCreate()).thenReturn(true);
+        final WebScaffoldMetadata webScaffoldMetadata = standIn(WebScaffoldMetadata.class);
+        when(webScaffoldMetadata.getAnnotationValues()).thenReturn(annotationValues);
+
+        metadataService = standIn(MetadataService.class);
+        when(metadataService.get(WebScaffoldMetadata.createIdentifier(controller, getPath(Path.SRC_MAIN_JAVA))))
+                .thenReturn(webScaffoldMetadata);
+
+        typeLocationService = standIn(TypeLocationService.class);
+        when(typeLocationService.getTypeDetails(controller)).thenReturn(controllerTypeDetails);
+        when(typeLocationService.getTypeDetails(entity)).thenReturn(entityTypeDetails);
+
+        final MemberDetails memberDetails = standIn(MemberDetails.class);
+        memberDetailsScanner = standIn(MemberDetailsScanner.class);
+        when(memberDetailsScanner.getMemberDetails(anyString(), any(ClassOrInterfaceTypeDetails.class)))
+                .thenReturn(memberDetails);
+
+        webMetadataService = standIn(WebMetadataService.class);
+        when(webMetadataService.getScaffoldEligibleFieldMetadata(entity, memberDetails, null)).thenReturn(fields);
+
+        // Files land in the work directory
+        final PathResolver pathResolver = standIn(PathResolver.class);
+        when(pathResolver.getIdentifier(any(LogicalPath.class), anyString())).thenAnswer(new Answer<String>() {
+            public String answer(final InvocationOnMock invocation) {
+                return new File(SyntheticProject.this.workDirectory, (String) invocation.getArguments()[1]).getPath();
+            }
+        });
+        projectOperations = standIn(ProjectOperations.class);
+        when(projectOperations.getPathResolver()).thenReturn(pathResolver);
+        when(projectOperations.getFocusedModuleName()).thenReturn(MODULE);
+        when(projectOperations.getProjectName(MODULE)).thenReturn("synthetic");
+        when(projectOperations.getTopLevelPackage(MODULE)).thenReturn(TOP_LEVEL_PACKAGE);
+    }
+
+    /**
+     * Returns operations wired to the stand-ins; the types they generate are
+     * discarded.
+     */
+    WebdriverOperationsImpl createOperations() throws Exception {
+        final WebdriverOperationsImpl operations = new WebdriverOperationsImpl();
+        inject(operations, "projectOperations", projectOperations);
+        inject(operations, "typeLocationService", typeLocationService);
+        inject(operations, "typeManagementService", standIn(TypeManagementService.class));
+        inject(operations, "fileManager", standIn(FileManager.class));
+        inject(operations, "metadataService", metadataService);
+        inject(operations, "memberDetailsScanner", memberDetailsScanner);
+        inject(operations, "webMetadataService", webMetadataService);
+        final WebdriverStatisticsImpl statistics = new WebdriverStatisticsImpl();
+        inject(operations, "statistics", statistics);
+        // The work directory has no views, so element ids are guessed
+        final WebdriverLocatorIndexImpl locatorIndex = new WebdriverLocatorIndexImpl();
+        inject(locatorIndex, "projectOperations", projectOperations);
+        inject(locatorIndex, "statistics", statistics);
+        locatorIndex.activate(null);
+        inject(operations, "locatorIndex", locatorIndex);
+        final Bundle bundle = standIn(Bundle.class);
+        when(bundle.getSymbolicName()).thenReturn("cz.bcp.roo.selenium.webdriver");
+        when(bundle.getVersion()).thenReturn(new Version("0.1.0.BUILD-SNAPSHOT"));
+        final BundleContext bundleContext = standIn(BundleContext.class);
+        when(bundleContext.getBundle()).thenReturn(bundle);
+        final ComponentContext componentContext = standIn(ComponentContext.class);
+        when(componentContext.getBundleContext()).thenReturn(bundleContext);
+        operations.activate(componentContext);
+        return operations;
+    }
+
+    /**
+     * Resolves the generation context of the controller as the operations do.
+     */
+    WebdriverGenerationContext resolveContext() {
+        return resolveContext(null);
+    }
+
+    /**
+     * Resolves the generation context of the controller through the given
+     * field cache.
+     */
+    WebdriverGenerationContext resolveContext(final WebdriverFieldCache fieldCache) {
+        return WebdriverGenerationContext.resolve(controllerTypeDetails,
+                WebdriverOperationsImpl.class.getName(), metadataService,
+                typeLocationService, memberDetailsScanner, webMetadataService, fieldCache);
+    }
+
+    /**
+     * Returns the physical type metadata of the generated test class, carrying
+     * its {@link RooWebdriver} annotation.
+     */
+    PhysicalTypeMetadata getTestClassMetadata() {
+        final JavaType testClass = getTestClass();
+        final String testClassId = PhysicalTypeIdentifier.createIdentifier(testClass, getPath(Path.SRC_TEST_JAVA));
+        final AnnotationMetadataBuilder annotation = new AnnotationMetadataBuilder(WebdriverAnnotationValues.ROO_WEBDRIVER);
+        annotation.addClassAttribute("controller", controller);
+        final ClassOrInterfaceTypeDetailsBuilder testClassBuilder = new ClassOrInterfaceTypeDetailsBuilder(
+                testClassId, Modifier.PUBLIC, testClass, PhysicalTypeCategory.CLASS);
+        testClassBuilder.addAnnotation(annotation);
+        return new DefaultPhysicalTypeMetadata(testClassId,
+                new File(workDirectory, testClass.getSimpleTypeName() + ".java").getPath(),
+                testClassBuilder.build());
+    }
+
+    JavaType getController() {
+        return controller;
+    }
+
+    JavaType getEntity() {
+        return entity;
+    }
+
+    JavaType getTestClass() {
+        return new JavaType(controller + "SeleniumTest");
+    }
+
+    List<FieldMetadata> getFields() {
+        return fields;
+    }
+
+    LogicalPath getPath(final Path path) {
+        return LogicalPath.getInstance(path, MODULE);
+    }
+
+    /**
+     * Returns the field with the given index, cycling through the kinds of
+     * fields Roo entities typically have.
+     */
+    private FieldMetadataBuilder getField(final String declaredByMetadataId, final int index) {
+        final List<AnnotationMetadataBuilder> annotations = new ArrayList<AnnotationMetadataBuilder>();
+        final JavaType type;
+        String name = "field" + index;
+        switch (index % 7) {
+        case 0:
+            type = STRING;
+            break;
+        case 1:
+            type = STRING;
+            name = "email" + index;
+            break;
+        case 2:
+            type = INT_OBJECT;
+            final AnnotationMetadataBuilder min = new AnnotationMetadataBuilder(MIN);
+            min.addLongAttribute("value", 3L);
+            annotations.add(min);
+            break;
+        case 3:
+            type = DATE;
+            final AnnotationMetadataBuilder dateTimeFormat = new AnnotationMetadataBuilder(DATE_TIME_FORMAT);
+            dateTimeFormat.addStringAttribute("style", "M-");
+            annotations.add(dateTimeFormat);
+            annotations.add(new AnnotationMetadataBuilder(PAST));
+            break;
+        case 4:
+            type = BIG_DECIMAL;
+            break;
+        case 5:
+            type = BOOLEAN_OBJECT;
+            break;
+        default:
+            type = LONG_OBJECT;
+            break;
+        }
+        return new FieldMetadataBuilder(declaredByMetadataId, Modifier.PRIVATE,
+                annotations, new JavaSymbolName(name), type);
+    }
+
+    private static <T> T standIn(final Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    static void inject(final Object target, final String fieldName, final Object value) throws Exception {
+        final Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -13,5 +13,75 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.SOURCE)
 public @interface RooWebdriver {
-}
 
+    /**
+     * @return the scaffolded controller whose create form is tested
+     */
+    Class<?> controller();
+
+    /**
+     * @return seconds to wait for each result element on the show page
+     */
+    int timeout() default 5;
+
+    /**
+     * @return milliseconds between two checks of a result element
+     */
+    int pollInterval() default 500;
+
+    /**
+     * @return whether the create form is filled by a single injected script
+     *         instead of typing into each input; the first input and date
+     *         inputs are still typed into
+     */
+    boolean scriptedFill() default false;
+
+    /**
+     * @return whether filling each input is timed through the test's
+     *         <code>recordTiming(String, long)</code> method
+     */
+    boolean timed() default false;
+
+    /**
+     * @return whether a <code>getFormData()</code> method returning the test
+     *         values as a URL encoded create form and a
+     *         <code>verifyShowMarkup(String)</code> method checking the show
+     *         page's markup are introduced, for clients posting the form
+     *         without a browser
+     */
+    boolean formData() default false;
+
+    /**
+     * @return whether the test drives a browser; without one, only the
+     *         methods introduced for {@link #formData()} are, and the test
+     *         needs no Selenium on its class path
+     */
+    boolean browser() default true;
+
+    /**
+     * @return how many records of the form backing object's DataOnDemand the
+     *         test submits in its browser session; above one, variants of
+     *         <code>fillForm</code> and <code>verifyShowPage</code> taking
+     *         the record are introduced; the DataOnDemand runs outside a
+     *         Spring context, so the form backing object must not have
+     *         <code>@ManyToOne</code> or <code>@OneToOne</code> fields
+     */
+    int records() default 1;
+
+    /**
+     * @return whether the test goes on to update the record it created; the
+     *         update is filled with another DataOnDemand record through the
+     *         variants of <code>fillForm</code> and
+     *         <code>verifyShowPage</code> taking the record, under the same
+     *         restriction as {@link #records()}
+     */
+    boolean journey() default false;
+
+    /**
+     * @return whether the test runs in a browser session that loads no
+     *         images, fonts or blocked URLs, created by the module's generated
+     *         lean profile; pooled tests share the pool's sessions, whose
+     *         size caps the full and lean sessions together
+     */
+    boolean lean() default false;
+}
@@ -0,0 +1,21 @@
+package cz.bcp.roo.webdriver;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Trigger annotation of the page objects generated for form backing objects.
+ * 
+ * @since 1.1
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface RooWebdriverPage {
+
+    /**
+     * @return the scaffolded controller whose pages are represented
+     */
+    Class<?> controller();
+}
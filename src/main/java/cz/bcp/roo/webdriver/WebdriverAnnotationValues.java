@@ -0,0 +1,81 @@
+package cz.bcp.roo.webdriver;
+
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.annotations.populator.AbstractAnnotationValues;
+import org.springframework.roo.classpath.details.annotations.populator.AutoPopulate;
+import org.springframework.roo.classpath.details.annotations.populator.AutoPopulationUtils;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Represents a parsed {@link RooWebdriver} annotation.
+ * 
+ * @since 1.1
+ */
+public class WebdriverAnnotationValues extends AbstractAnnotationValues {
+
+    public static final JavaType ROO_WEBDRIVER = new JavaType(
+            RooWebdriver.class.getName());
+
+    @AutoPopulate private JavaType controller;
+    @AutoPopulate private int timeout = WebdriverTestOptions.DEFAULT_TIMEOUT;
+    @AutoPopulate private int pollInterval = (int) WebdriverTestOptions.DEFAULT_POLL_INTERVAL;
+    @AutoPopulate private boolean scriptedFill;
+    @AutoPopulate private boolean timed;
+    @AutoPopulate private boolean formData;
+    @AutoPopulate private boolean browser = true;
+    @AutoPopulate private int records = WebdriverTestOptions.DEFAULT_RECORDS;
+    @AutoPopulate private boolean journey;
+    @AutoPopulate private boolean lean;
+
+    /**
+     * Constructor
+     * 
+     * @param governorPhysicalTypeMetadata the metadata of the annotated test
+     *            class
+     */
+    public WebdriverAnnotationValues(
+            final PhysicalTypeMetadata governorPhysicalTypeMetadata) {
+        super(governorPhysicalTypeMetadata, ROO_WEBDRIVER);
+        AutoPopulationUtils.populate(this, annotationMetadata);
+    }
+
+    public JavaType getController() {
+        return controller;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public int getPollInterval() {
+        return pollInterval;
+    }
+
+    public boolean isScriptedFill() {
+        return scriptedFill;
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public boolean isFormData() {
+        return formData;
+    }
+
+    public boolean isBrowser() {
+        return browser;
+    }
+
+    public int getRecords() {
+        return records;
+    }
+
+    public boolean isJourney() {
+        return journey;
+    }
+
+    public boolean isLean() {
+        return lean;
+    }
+}
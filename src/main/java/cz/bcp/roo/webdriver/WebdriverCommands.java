@@ -1,5 +1,8 @@
 package cz.bcp.roo.webdriver;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
@@ -26,6 +29,7 @@ public class WebdriverCommands implements CommandMarker { // All command types m
      * Get a reference to the WebdriverOperations from the underlying OSGi container
      */
     @Reference private WebdriverOperations operations;
+    @Reference private WebdriverStatistics statistics;
     
     /**
      * This method is optional. It allows automatic command hiding in situations when the command should not be visible.
@@ -37,7 +41,7 @@ public class WebdriverCommands implements CommandMarker { // All command types m
      * 
      * @return true (default) if the command should be visible at this stage, false otherwise
      */
-    @CliAvailabilityIndicator({ "webdriver add-dependencies", "webdriver create-test"})
+    @CliAvailabilityIndicator({ "webdriver add-dependencies", "webdriver add-module-dependencies", "webdriver create-test", "webdriver create-tests", "webdriver create-load-test", "webdriver create-smoke-test", "webdriver configure-parallel", "webdriver shard-tests", "webdriver stats"})
     public boolean isCommandAvailable() {
         return operations.isCommandAvailable();
     }
@@ -48,16 +52,124 @@ public class WebdriverCommands implements CommandMarker { // All command types m
      * @param type 
      */
     @CliCommand(value = "webdriver create-test", help = "Creates a new WebDriver test for the specified entity")
-    public void createTest(@CliOption(key = "classUnderTest", mandatory = true, help = "The name of the entity to create a WebDriver test for") JavaType entity) {
-        operations.createTestClass(entity);
+    public void createTest(@CliOption(key = "classUnderTest", mandatory = true, help = "The name of the entity to create a WebDriver test for") JavaType entity,
+            @CliOption(key = "timeout", mandatory = false, unspecifiedDefaultValue = "5", help = "Seconds to wait for each result element") int timeout,
+            @CliOption(key = "pollInterval", mandatory = false, unspecifiedDefaultValue = "500", help = "Milliseconds between two checks of a result element") long pollInterval,
+            @CliOption(key = "driver", mandatory = false, unspecifiedDefaultValue = "FIREFOX", help = "The browser to run the test against") WebdriverDriverType driverType,
+            @CliOption(key = "pooled", mandatory = false, unspecifiedDefaultValue = "true", specifiedDefaultValue = "true", help = "Borrow browser sessions from a shared pool instead of launching a browser per test") boolean pooled,
+            @CliOption(key = "threadSafe", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Confine the driver to the test thread for parallel execution") boolean threadSafe,
+            @CliOption(key = "scriptedFill", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Fill the create form with a single injected script instead of typing into every input") boolean scriptedFill,
+            @CliOption(key = "timed", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Record the duration of every test step into CSV and JSON reports") boolean timed,
+            @CliOption(key = "records", mandatory = false, unspecifiedDefaultValue = "1", help = "Submit this many records of the entity's DataOnDemand in one browser session; the entity must not have @ManyToOne or @OneToOne fields") int records,
+            @CliOption(key = "journey", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Go on to list, update and delete each created record in the same browser session; updates take a DataOnDemand record, so the entity must not have @ManyToOne or @OneToOne fields") boolean journey,
+            @CliOption(key = "lean", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Run in a browser session that loads no images, fonts or blocked URLs") boolean lean,
+            @CliOption(key = "blockedUrls", mandatory = false, help = "Comma separated URL patterns a lean session does not load; * matches any text") String blockedUrls) {
+        operations.createTestClass(entity, getOptions(timeout, pollInterval, driverType, pooled, threadSafe, scriptedFill, timed, records, journey, lean, blockedUrls));
+    }
+    
+    /**
+     * This method registers a command with the Roo shell. It creates tests for every scaffolded controller in one pass.
+     * 
+     * @param all must be specified to confirm all controllers should be processed
+     */
+    @CliCommand(value = "webdriver create-tests", help = "Creates WebDriver tests for all scaffolded controllers")
+    public String createTests(@CliOption(key = "all", mandatory = true, specifiedDefaultValue = "true", help = "Create a WebDriver test for every scaffolded controller") boolean all,
+            @CliOption(key = "timeout", mandatory = false, unspecifiedDefaultValue = "5", help = "Seconds to wait for each result element") int timeout,
+            @CliOption(key = "pollInterval", mandatory = false, unspecifiedDefaultValue = "500", help = "Milliseconds between two checks of a result element") long pollInterval,
+            @CliOption(key = "driver", mandatory = false, unspecifiedDefaultValue = "FIREFOX", help = "The browser to run the test against") WebdriverDriverType driverType,
+            @CliOption(key = "pooled", mandatory = false, unspecifiedDefaultValue = "true", specifiedDefaultValue = "true", help = "Borrow browser sessions from a shared pool instead of launching a browser per test") boolean pooled,
+            @CliOption(key = "threadSafe", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Confine the driver to the test thread for parallel execution") boolean threadSafe,
+            @CliOption(key = "scriptedFill", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Fill the create form with a single injected script instead of typing into every input") boolean scriptedFill,
+            @CliOption(key = "timed", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Record the duration of every test step into CSV and JSON reports") boolean timed,
+            @CliOption(key = "records", mandatory = false, unspecifiedDefaultValue = "1", help = "Submit this many records of the entity's DataOnDemand in one browser session; the entity must not have @ManyToOne or @OneToOne fields") int records,
+            @CliOption(key = "journey", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Go on to list, update and delete each created record in the same browser session; updates take a DataOnDemand record, so the entity must not have @ManyToOne or @OneToOne fields") boolean journey,
+            @CliOption(key = "lean", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Run in a browser session that loads no images, fonts or blocked URLs") boolean lean,
+            @CliOption(key = "blockedUrls", mandatory = false, help = "Comma separated URL patterns a lean session does not load; * matches any text") String blockedUrls) {
+        if (!all) {
+            return "Nothing to do; use --all to create tests for every scaffolded controller";
+        }
+        operations.createTestClasses(getOptions(timeout, pollInterval, driverType, pooled, threadSafe, scriptedFill, timed, records, journey, lean, blockedUrls));
+        return null;
+    }
+    
+    @CliCommand(value = "webdriver create-load-test", help = "Creates a load test of the create flow of the specified controller, reporting throughput and latency percentiles")
+    public void createLoadTest(@CliOption(key = "classUnderTest", mandatory = true, help = "The scaffolded controller to create a load test for") JavaType controller,
+            @CliOption(key = "mode", mandatory = false, unspecifiedDefaultValue = "HTTP", help = "Post the create form directly or drive browser sessions") WebdriverLoadMode mode,
+            @CliOption(key = "sessions", mandatory = false, unspecifiedDefaultValue = "10", help = "The number of concurrent sessions") int sessions,
+            @CliOption(key = "duration", mandatory = false, unspecifiedDefaultValue = "60", help = "Seconds to run the create flow for") int duration,
+            @CliOption(key = "driver", mandatory = false, unspecifiedDefaultValue = "HTMLUNIT", help = "The browser of browser sessions") WebdriverDriverType driverType) {
+        operations.createLoadTest(controller, mode, sessions, duration, driverType);
+    }
+    
+    @CliCommand(value = "webdriver create-smoke-test", help = "Creates a browserless test posting the create form of the specified controller and checking the show page markup")
+    public void createSmokeTest(@CliOption(key = "classUnderTest", mandatory = true, help = "The scaffolded controller to create a smoke test for") JavaType controller) {
+        operations.createSmokeTest(controller);
+    }
+    
+    private WebdriverTestOptions getOptions(int timeout, long pollInterval, WebdriverDriverType driverType, boolean pooled, boolean threadSafe, boolean scriptedFill, boolean timed, int records, boolean journey, boolean lean, String blockedUrls) {
+        final WebdriverTestOptions options = new WebdriverTestOptions();
+        options.setTimeout(timeout);
+        options.setPollInterval(pollInterval);
+        options.setDriverType(driverType);
+        options.setPooled(pooled);
+        options.setThreadSafe(threadSafe);
+        options.setScriptedFill(scriptedFill);
+        options.setTimed(timed);
+        options.setRecords(records);
+        options.setJourney(journey);
+        options.setLean(lean);
+        final List<String> patterns = new ArrayList<String>();
+        if (blockedUrls != null) {
+            for (final String pattern : blockedUrls.split(",")) {
+                if (pattern.trim().length() > 0) {
+                    patterns.add(pattern.trim());
+                }
+            }
+        }
+        options.setBlockedUrls(patterns);
+        return options;
     }
     
     /**
-     * This method registers a command with the Roo shell. It has no command attribute.
+     * This method registers a command with the Roo shell. It adds the dependencies of the chosen driver only.
      * 
      */
     @CliCommand(value = "webdriver add-dependencies", help = "Add WebDriver dependencies to POM")
-    public void addDependencies() {
-        operations.addDependencies();
+    public void addDependencies(@CliOption(key = "driver", mandatory = false, unspecifiedDefaultValue = "FIREFOX", help = "The browser whose driver should be added") WebdriverDriverType driverType) {
+        operations.addDependencies(driverType);
+    }
+    
+    @CliCommand(value = "webdriver add-module-dependencies", help = "Add WebDriver dependencies to the POMs of several modules in one batch")
+    public void addModuleDependencies(@CliOption(key = "driver", mandatory = false, unspecifiedDefaultValue = "FIREFOX", help = "The browser whose driver should be added") WebdriverDriverType driverType,
+            @CliOption(key = "modules", mandatory = false, help = "Comma separated names of the modules; all web modules by default") String modules) {
+        final List<String> moduleNames = new ArrayList<String>();
+        if (modules != null) {
+            for (final String moduleName : modules.split(",")) {
+                if (moduleName.trim().length() > 0) {
+                    moduleNames.add(moduleName.trim());
+                }
+            }
+        }
+        operations.addDependencies(driverType, moduleNames);
+    }
+    
+    @CliCommand(value = "webdriver stats", help = "Shows the calls, latency and lookups of the WebDriver add-on since the last reset")
+    public String stats(@CliOption(key = "reset", mandatory = false, unspecifiedDefaultValue = "false", specifiedDefaultValue = "true", help = "Clear the counters after showing them") boolean reset) {
+        final String report = statistics.getReport();
+        if (reset) {
+            statistics.reset();
+        }
+        return report;
+    }
+    
+    @CliCommand(value = "webdriver configure-parallel", help = "Configures Surefire to run the tests in parallel forks and threads")
+    public void configureParallel(@CliOption(key = "forks", mandatory = false, unspecifiedDefaultValue = "2", help = "The number of forked JVMs") int forks,
+            @CliOption(key = "threads", mandatory = false, unspecifiedDefaultValue = "2", help = "The number of test classes run concurrently in each fork") int threads) {
+        operations.configureParallelExecution(forks, threads);
+    }
+    
+    @CliCommand(value = "webdriver shard-tests", help = "Distributes the WebDriver tests over shards of equal run time, based on the last build's durations")
+    public void shardTests(@CliOption(key = "shards", mandatory = true, help = "The number of shards") int shards) {
+        operations.shardTests(shards);
     }
 }
\ No newline at end of file
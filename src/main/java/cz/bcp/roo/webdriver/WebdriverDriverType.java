@@ -0,0 +1,166 @@
+package cz.bcp.roo.webdriver;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Browsers a generated WebDriver test can run against. Each type knows the
+ * imports and statements needed to construct its driver, fully rendering or
+ * lean, and the name of the driver element in the add-on's
+ * <code>configuration.xml</code> listing the artifacts it needs.
+ *
+ * @since 1.1
+ */
+public enum WebdriverDriverType {
+
+    /**
+     * Firefox on the current display
+     */
+    FIREFOX("Firefox", "firefox", Arrays
+            .asList("org.openqa.selenium.firefox.FirefoxDriver"),
+            "return new FirefoxDriver();", Arrays.asList(
+                    "org.openqa.selenium.firefox.FirefoxDriver",
+                    "org.openqa.selenium.firefox.FirefoxProfile"),
+            getLeanFirefoxProfile()
+                    + "        return new FirefoxDriver(profile);"),
+
+    /**
+     * Firefox rendering to a virtual display (e.g. Xvfb) given by the
+     * "webdriver.display" system property, for build agents without a screen
+     */
+    HEADLESS_FIREFOX("HeadlessFirefox", "firefox", Arrays.asList(
+            "org.openqa.selenium.firefox.FirefoxBinary",
+            "org.openqa.selenium.firefox.FirefoxDriver",
+            "org.openqa.selenium.firefox.FirefoxProfile"),
+            "FirefoxBinary binary = new FirefoxBinary();\n"
+                    + "        binary.setEnvironmentProperty(\"DISPLAY\", System.getProperty(\"webdriver.display\", \":99\"));\n"
+                    + "        return new FirefoxDriver(binary, new FirefoxProfile());",
+            Arrays.asList("org.openqa.selenium.firefox.FirefoxBinary",
+                    "org.openqa.selenium.firefox.FirefoxDriver",
+                    "org.openqa.selenium.firefox.FirefoxProfile"),
+            "FirefoxBinary binary = new FirefoxBinary();\n"
+                    + "        binary.setEnvironmentProperty(\"DISPLAY\", System.getProperty(\"webdriver.display\", \":99\"));\n"
+                    + "        " + getLeanFirefoxProfile()
+                    + "        return new FirefoxDriver(binary, profile);"),
+
+    /**
+     * In-process HtmlUnit browser; needs neither a display nor a browser
+     * installation
+     */
+    HTMLUNIT("HtmlUnit", "htmlunit", Arrays
+            .asList("org.openqa.selenium.htmlunit.HtmlUnitDriver"),
+            "return new HtmlUnitDriver(true);", Arrays.asList(
+                    "java.io.IOException",
+                    "org.openqa.selenium.htmlunit.HtmlUnitDriver",
+                    "com.gargoylesoftware.htmlunit.WebClient",
+                    "com.gargoylesoftware.htmlunit.WebRequest",
+                    "com.gargoylesoftware.htmlunit.WebResponse",
+                    "com.gargoylesoftware.htmlunit.util.FalsifyingWebConnection"),
+            // HtmlUnit neither renders nor fetches images and fonts, so only
+            // the blocked URLs are answered without a request
+            "return new HtmlUnitDriver(true) {\n"
+                    + "            @Override\n"
+                    + "            protected WebClient modifyWebClient(WebClient client) {\n"
+                    + "                client.setWebConnection(new FalsifyingWebConnection(client) {\n"
+                    + "                    @Override\n"
+                    + "                    public WebResponse getResponse(WebRequest request) throws IOException {\n"
+                    + "                        if (isBlocked(request.getUrl().toString())) {\n"
+                    + "                            return createWebResponse(request, \"\", \"text/plain\", 204, \"No Content\");\n"
+                    + "                        }\n"
+                    + "                        return super.getResponse(request);\n"
+                    + "                    }\n"
+                    + "                });\n"
+                    + "                return client;\n"
+                    + "            }\n"
+                    + "        };");
+
+    private final String name;
+    private final String configurationName;
+    private final List<String> imports;
+    private final String createStatements;
+    private final List<String> leanImports;
+    private final String leanCreateStatements;
+
+    private WebdriverDriverType(final String name,
+            final String configurationName, final List<String> imports,
+            final String createStatements, final List<String> leanImports,
+            final String leanCreateStatements) {
+        this.name = name;
+        this.configurationName = configurationName;
+        this.imports = Collections.unmodifiableList(imports);
+        this.createStatements = createStatements;
+        this.leanImports = Collections.unmodifiableList(leanImports);
+        this.leanCreateStatements = leanCreateStatements;
+    }
+
+    /**
+     * Returns the statements configuring a Firefox profile that loads no
+     * images, web fonts or blocked URLs. Only preferences honoured by the
+     * Firefox ESR releases Selenium 2.39 drives (up to 26) are set; the page
+     * load strategy and the reduced motion preferences of later versions are
+     * ignored there. The proxy auto-config is only installed if any URL is
+     * blocked.
+     */
+    private static String getLeanFirefoxProfile() {
+        return "FirefoxProfile profile = new FirefoxProfile();\n"
+                + "        profile.setPreference(\"permissions.default.image\", 2);\n"
+                + "        profile.setPreference(\"gfx.downloadable_fonts.enabled\", false);\n"
+                + "        profile.setPreference(\"browser.display.use_document_fonts\", 0);\n"
+                + "        String proxyAutoConfigUrl = getProxyAutoConfigUrl();\n"
+                + "        if (proxyAutoConfigUrl != null) {\n"
+                + "            profile.setPreference(\"network.proxy.type\", 2);\n"
+                + "            profile.setPreference(\"network.proxy.autoconfig_url\", proxyAutoConfigUrl);\n"
+                + "        }\n";
+    }
+
+    /**
+     * @return the prefix used for generated driver support types, e.g.
+     *         <code>HtmlUnit</code> for <code>HtmlUnitDriverPool</code>
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the driver element in
+     *         <code>configuration.xml</code> holding the driver's
+     *         dependencies
+     */
+    public String getConfigurationName() {
+        return configurationName;
+    }
+
+    /**
+     * @return the fully qualified names of the types needed to create the
+     *         driver
+     */
+    public List<String> getImports() {
+        return imports;
+    }
+
+    /**
+     * @return statements that create a new driver and return it
+     */
+    public String getCreateStatements() {
+        return createStatements;
+    }
+
+    /**
+     * @return the fully qualified names of the types needed to create the
+     *         lean driver
+     */
+    public List<String> getLeanImports() {
+        return leanImports;
+    }
+
+    /**
+     * @return statements that create a new lean driver and return it; they
+     *         call the static <code>isBlocked(String)</code> and
+     *         <code>getProxyAutoConfigUrl()</code> of the generated lean
+     *         profile they are placed in
+     */
+    public String getLeanCreateStatements() {
+        return leanCreateStatements;
+    }
+}
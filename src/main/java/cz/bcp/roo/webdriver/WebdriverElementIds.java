@@ -0,0 +1,37 @@
+package cz.bcp.roo.webdriver;
+
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Ids of the elements Roo's scaffolded JSPX views render for the fields of a
+ * form backing object.
+ * 
+ * @since 1.1
+ */
+final class WebdriverElementIds {
+
+    /**
+     * Returns the id of the input a field is edited with on the create and
+     * update forms, e.g. <code>_name_id</code>.
+     */
+    static String getInputId(final FieldMetadata field) {
+        return "_" + field.getFieldName().getSymbolName() + "_id";
+    }
+
+    /**
+     * Returns the id of the element a field's value is displayed in on the
+     * show page, e.g. <code>_s_com_foo_Person_name_name_id</code>.
+     */
+    static String getResultId(final JavaType formBackingType,
+            final FieldMetadata field) {
+        final String resultDivId = "_s_"
+                + formBackingType.getFullyQualifiedTypeName() + "_"
+                + field.getFieldName().getSymbolName() + "_"
+                + field.getFieldName().getSymbolName() + "_id";
+        return resultDivId.replace('.', '_');
+    }
+
+    private WebdriverElementIds() {
+    }
+}
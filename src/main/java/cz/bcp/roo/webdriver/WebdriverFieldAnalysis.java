@@ -0,0 +1,78 @@
+package cz.bcp.roo.webdriver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * The analysed fields of a form backing object: its member details and those
+ * of its scaffold eligible fields that are rendered as simple inputs. It is
+ * the expensive part of a {@link WebdriverGenerationContext} and is kept in
+ * the {@link WebdriverFieldCache} until the form backing object or one of
+ * its field types changes.
+ *
+ * @since 1.1
+ */
+public final class WebdriverFieldAnalysis {
+
+    private final ClassOrInterfaceTypeDetails formBackingTypeDetails;
+    private final MemberDetails memberDetails;
+    private final List<FieldMetadata> fields;
+    private final Set<JavaType> fieldTypes;
+
+    /**
+     * Constructor
+     *
+     * @param formBackingTypeDetails the analysed form backing object
+     * @param memberDetails its member details
+     * @param fields its fields rendered as simple inputs
+     * @param fieldTypes the field types looked up in the project to tell
+     *            simple fields from references
+     */
+    public WebdriverFieldAnalysis(
+            final ClassOrInterfaceTypeDetails formBackingTypeDetails,
+            final MemberDetails memberDetails, final List<FieldMetadata> fields,
+            final Set<JavaType> fieldTypes) {
+        Validate.notNull(formBackingTypeDetails, "Form backing type details required");
+        Validate.notNull(fields, "Fields required");
+        Validate.notNull(fieldTypes, "Field types required");
+        this.formBackingTypeDetails = formBackingTypeDetails;
+        this.memberDetails = memberDetails;
+        this.fields = Collections.unmodifiableList(new ArrayList<FieldMetadata>(fields));
+        this.fieldTypes = Collections.unmodifiableSet(new HashSet<JavaType>(fieldTypes));
+    }
+
+    /**
+     * @return the type details the analysis was made from
+     */
+    public ClassOrInterfaceTypeDetails getFormBackingTypeDetails() {
+        return formBackingTypeDetails;
+    }
+
+    public MemberDetails getMemberDetails() {
+        return memberDetails;
+    }
+
+    /**
+     * @return an unmodifiable list
+     */
+    public List<FieldMetadata> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the field types the analysis depends on being in the project or
+     *         not, as an unmodifiable set
+     */
+    public Set<JavaType> getFieldTypes() {
+        return fieldTypes;
+    }
+}
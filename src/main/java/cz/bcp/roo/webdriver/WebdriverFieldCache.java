@@ -0,0 +1,39 @@
+package cz.bcp.roo.webdriver;
+
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+
+/**
+ * Bounded cache of the {@link WebdriverFieldAnalysis} of each form backing
+ * object, so generating for an unchanged entity again skips the member
+ * details scan and the field checks. Entries are evicted when the entity's
+ * physical type changes, or a type its fields are declared with is added to
+ * or removed from the project.
+ *
+ * @since 1.1
+ */
+public interface WebdriverFieldCache {
+
+    /**
+     * Returns the analysis of the given form backing object if it was made
+     * from these very type details.
+     *
+     * @param formBackingTypeDetails the current details of the form backing
+     *            object
+     * @return the analysis, or <code>null</code> if none is cached
+     */
+    WebdriverFieldAnalysis get(ClassOrInterfaceTypeDetails formBackingTypeDetails);
+
+    /**
+     * Caches the given analysis, evicting the least recently used one if the
+     * cache is full.
+     */
+    void put(WebdriverFieldAnalysis analysis);
+
+    /**
+     * Evicts the analysis of the given type and those of the form backing
+     * objects having a field of that type, if any.
+     *
+     * @param physicalTypeIdentifier the physical type id of the changed type
+     */
+    void evict(String physicalTypeIdentifier);
+}
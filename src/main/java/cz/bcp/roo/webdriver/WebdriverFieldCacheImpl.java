@@ -0,0 +1,82 @@
+package cz.bcp.roo.webdriver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Implementation of {@link WebdriverFieldCache} keeping the most recently
+ * used analyses in an access ordered map, keyed by the physical type id of
+ * the form backing object.
+ *
+ * @since 1.1
+ */
+@Component
+@Service
+public class WebdriverFieldCacheImpl implements WebdriverFieldCache {
+
+    static final int MAX_ENTRIES = 512;
+
+    @Reference private WebdriverStatistics statistics;
+
+    private final Map<String, WebdriverFieldAnalysis> analyses = new LinkedHashMap<String, WebdriverFieldAnalysis>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, WebdriverFieldAnalysis> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    protected void deactivate(final ComponentContext context) {
+        synchronized (analyses) {
+            analyses.clear();
+        }
+    }
+
+    public WebdriverFieldAnalysis get(final ClassOrInterfaceTypeDetails formBackingTypeDetails) {
+        Validate.notNull(formBackingTypeDetails, "Form backing type details required");
+        final WebdriverFieldAnalysis analysis;
+        synchronized (analyses) {
+            analysis = analyses.get(formBackingTypeDetails.getDeclaredByMetadataId());
+        }
+        // Type details are replaced whenever the type changes, so an analysis
+        // of other details is stale even if its eviction was missed
+        if (analysis == null || analysis.getFormBackingTypeDetails() != formBackingTypeDetails) {
+            statistics.count(WebdriverStatistics.FIELD_CACHE_MISSES, 1);
+            return null;
+        }
+        statistics.count(WebdriverStatistics.FIELD_CACHE_HITS, 1);
+        return analysis;
+    }
+
+    public void put(final WebdriverFieldAnalysis analysis) {
+        Validate.notNull(analysis, "Field analysis required");
+        synchronized (analyses) {
+            analyses.put(analysis.getFormBackingTypeDetails().getDeclaredByMetadataId(), analysis);
+        }
+    }
+
+    public void evict(final String physicalTypeIdentifier) {
+        // A field type that joined or left the project turns a simple field
+        // into a reference or back
+        final JavaType type = PhysicalTypeIdentifier.getJavaType(physicalTypeIdentifier);
+        synchronized (analyses) {
+            analyses.remove(physicalTypeIdentifier);
+            for (final Iterator<WebdriverFieldAnalysis> iterator = analyses.values().iterator(); iterator.hasNext();) {
+                if (iterator.next().getFieldTypes().contains(type)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package cz.bcp.roo.webdriver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * Store of fingerprints of the inputs each generated source was last built
+ * from, kept in the module's target directory. A source whose inputs are
+ * unchanged does not need to be built or written again, which saves the IDE,
+ * the AspectJ weaver and incremental compilation from reprocessing it.
+ *
+ * @since 1.1
+ */
+final class WebdriverFingerprints {
+
+    private static final Logger LOGGER = HandlerUtils
+            .getLogger(WebdriverFingerprints.class);
+
+    static final String FILE_NAME = "webdriver-fingerprints.properties";
+
+    // Suffix of the keys of the sources as they were written
+    private static final String SOURCE_SUFFIX = ".source";
+
+    /**
+     * Returns the SHA-1 fingerprint of the given inputs.
+     *
+     * @param inputs a canonical text form of everything a source is built from
+     * @return a hexadecimal digest
+     */
+    static String fingerprint(final String inputs) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+                    inputs.getBytes("UTF-8"));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final File file;
+    private final Properties fingerprints = new Properties();
+    private boolean modified;
+    private int unchangedCount;
+
+    /**
+     * Loads the store kept in the given file, if it exists.
+     *
+     * @param file the fingerprint file (required)
+     */
+    WebdriverFingerprints(final File file) {
+        Validate.notNull(file, "Fingerprint file required");
+        this.file = file;
+        if (!file.isFile()) {
+            return;
+        }
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            fingerprints.load(inputStream);
+        }
+        catch (final IOException e) {
+            // Everything will simply be regenerated
+            LOGGER.fine("Could not read " + file + ": " + e.getMessage());
+        }
+        finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * @return whether a fingerprint has been recorded for the given source
+     */
+    boolean contains(final String key) {
+        return fingerprints.containsKey(key);
+    }
+
+    /**
+     * Indicates whether the given source was last built from the same inputs.
+     */
+    boolean matches(final String key, final String fingerprint) {
+        return fingerprint.equals(fingerprints.getProperty(key));
+    }
+
+    /**
+     * Indicates whether the given source was last built from the same
+     * inputs, counting it as unchanged if so.
+     */
+    boolean isUnchanged(final String key, final String fingerprint) {
+        if (matches(key, fingerprint)) {
+            unchangedCount++;
+            return true;
+        }
+        return false;
+    }
+
+    void record(final String key, final String fingerprint) {
+        if (!fingerprint.equals(fingerprints.setProperty(key, fingerprint))) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Records the source as it was written, so later edits can be told from
+     * it.
+     */
+    void recordSource(final String key, final String source) {
+        record(key + SOURCE_SUFFIX, fingerprint(source));
+    }
+
+    /**
+     * Indicates whether the given source differs from the one last written.
+     * A source written before sources were recorded counts as unedited.
+     */
+    boolean isEdited(final String key, final String source) {
+        final String written = fingerprints.getProperty(key + SOURCE_SUFFIX);
+        return written != null && !written.equals(fingerprint(source));
+    }
+
+    /**
+     * @return how many sources were found unchanged since this store was
+     *         loaded
+     */
+    int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    /**
+     * Writes the store back if any fingerprint was recorded.
+     */
+    void store() {
+        if (!modified) {
+            return;
+        }
+        OutputStream outputStream = null;
+        try {
+            file.getParentFile().mkdirs();
+            outputStream = new FileOutputStream(file);
+            fingerprints.store(outputStream,
+                    "Inputs of the sources generated by the WebDriver add-on");
+            modified = false;
+        }
+        catch (final IOException e) {
+            LOGGER.warning("Could not write " + file + ": " + e.getMessage());
+        }
+        finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package cz.bcp.roo.webdriver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.addon.web.mvc.controller.details.WebMetadataService;
+import org.springframework.roo.addon.web.mvc.controller.scaffold.WebScaffoldMetadata;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.scanner.MemberDetails;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+
+/**
+ * Immutable snapshot of everything the add-on needs to know about a scaffolded
+ * controller to generate its WebDriver test. It is resolved once per
+ * generation and handed to every method builder, so the controller and its
+ * form backing object are never looked up more than once.
+ *
+ * @since 1.1
+ */
+public final class WebdriverGenerationContext {
+
+    /**
+     * Resolves the generation context for the given controller.
+     *
+     * @param controllerTypeDetails the scaffolded controller (required)
+     * @param requestingClass the class requesting the member details
+     * @param metadataService the metadata service
+     * @param typeLocationService the type location service
+     * @param memberDetailsScanner the member details scanner
+     * @param webMetadataService the web metadata service
+     * @param fieldCache the cache of analysed form backing objects, or
+     *            <code>null</code> to always analyse them
+     * @return a non-<code>null</code> context
+     * @throws NullPointerException if the controller is not scaffolded or its
+     *             form backing object cannot be resolved
+     */
+    public static WebdriverGenerationContext resolve(
+            final ClassOrInterfaceTypeDetails controllerTypeDetails,
+            final String requestingClass,
+            final MetadataService metadataService,
+            final TypeLocationService typeLocationService,
+            final MemberDetailsScanner memberDetailsScanner,
+            final WebMetadataService webMetadataService,
+            final WebdriverFieldCache fieldCache) {
+        return resolve(controllerTypeDetails, requestingClass,
+                metadataService, typeLocationService, memberDetailsScanner,
+                webMetadataService, fieldCache, true);
+    }
+
+    /**
+     * Resolves the generation context for the given controller if all the
+     * metadata it needs is available, as is required by metadata providers
+     * that may run before the scaffold metadata exists.
+     * 
+     * @return the context, or <code>null</code> if the controller is not
+     *         scaffolded or its form backing object cannot be resolved
+     * @see #resolve(ClassOrInterfaceTypeDetails, String, MetadataService,
+     *      TypeLocationService, MemberDetailsScanner, WebMetadataService,
+     *      WebdriverFieldCache)
+     */
+    public static WebdriverGenerationContext resolveIfAvailable(
+            final ClassOrInterfaceTypeDetails controllerTypeDetails,
+            final String requestingClass,
+            final MetadataService metadataService,
+            final TypeLocationService typeLocationService,
+            final MemberDetailsScanner memberDetailsScanner,
+            final WebMetadataService webMetadataService,
+            final WebdriverFieldCache fieldCache) {
+        return resolve(controllerTypeDetails, requestingClass,
+                metadataService, typeLocationService, memberDetailsScanner,
+                webMetadataService, fieldCache, false);
+    }
+
+    private static WebdriverGenerationContext resolve(
+            final ClassOrInterfaceTypeDetails controllerTypeDetails,
+            final String requestingClass,
+            final MetadataService metadataService,
+            final TypeLocationService typeLocationService,
+            final MemberDetailsScanner memberDetailsScanner,
+            final WebMetadataService webMetadataService,
+            final WebdriverFieldCache fieldCache, final boolean required) {
+        Validate.notNull(controllerTypeDetails, "Controller type details required");
+        int metadataServiceCalls = 0;
+        int typeLocationServiceCalls = 0;
+        int memberDetailsScannerCalls = 0;
+        int webMetadataServiceCalls = 0;
+
+        final JavaType controller = controllerTypeDetails.getName();
+        final LogicalPath path = PhysicalTypeIdentifier
+                .getPath(controllerTypeDetails.getDeclaredByMetadataId());
+        final WebScaffoldMetadata webScaffoldMetadata = (WebScaffoldMetadata) metadataService
+                .get(WebScaffoldMetadata.createIdentifier(controller, path));
+        metadataServiceCalls++;
+        if (webScaffoldMetadata == null && !required) {
+            return null;
+        }
+        Validate.notNull(
+                webScaffoldMetadata,
+                "Web controller '%s' does not appear to be an automatic, scaffolded controller",
+                controller.getFullyQualifiedTypeName());
+
+        final JavaType formBackingType = webScaffoldMetadata
+                .getAnnotationValues().getFormBackingObject();
+        final ClassOrInterfaceTypeDetails formBackingTypeDetails = typeLocationService
+                .getTypeDetails(formBackingType);
+        typeLocationServiceCalls++;
+        if (formBackingTypeDetails == null && !required) {
+            return null;
+        }
+        Validate.notNull(
+                formBackingTypeDetails,
+                "Class or interface type details for type '%s' could not be resolved",
+                formBackingType);
+
+        WebdriverFieldAnalysis analysis = fieldCache == null ? null
+                : fieldCache.get(formBackingTypeDetails);
+        if (analysis == null) {
+            final MemberDetails memberDetails = memberDetailsScanner
+                    .getMemberDetails(requestingClass, formBackingTypeDetails);
+            memberDetailsScannerCalls++;
+
+            final List<FieldMetadata> eligibleFields = webMetadataService
+                    .getScaffoldEligibleFieldMetadata(formBackingType,
+                            memberDetails, null);
+            webMetadataServiceCalls++;
+
+            // Only simple fields get a text input on the create form
+            final List<FieldMetadata> fields = new ArrayList<FieldMetadata>();
+            final Set<JavaType> checkedTypes = new HashSet<JavaType>();
+            for (final FieldMetadata field : eligibleFields) {
+                final JavaType fieldType = field.getFieldType();
+                if (fieldType.isCommonCollectionType()) {
+                    continue;
+                }
+                checkedTypes.add(fieldType);
+                typeLocationServiceCalls++;
+                if (!typeLocationService.isInProject(fieldType)) {
+                    fields.add(field);
+                }
+            }
+
+            analysis = new WebdriverFieldAnalysis(formBackingTypeDetails,
+                    memberDetails, fields, checkedTypes);
+            if (fieldCache != null) {
+                fieldCache.put(analysis);
+            }
+        }
+
+        return new WebdriverGenerationContext(controllerTypeDetails, path,
+                webScaffoldMetadata, formBackingTypeDetails,
+                analysis.getMemberDetails(), analysis.getFields(),
+                metadataServiceCalls, typeLocationServiceCalls,
+                memberDetailsScannerCalls, webMetadataServiceCalls);
+    }
+
+    // Fields
+    private final ClassOrInterfaceTypeDetails controllerTypeDetails;
+    private final LogicalPath path;
+    private final WebScaffoldMetadata webScaffoldMetadata;
+    private final ClassOrInterfaceTypeDetails formBackingTypeDetails;
+    private final MemberDetails formBackingMemberDetails;
+    private final List<FieldMetadata> fields;
+    private final int metadataServiceCalls;
+    private final int typeLocationServiceCalls;
+    private final int memberDetailsScannerCalls;
+    private final int webMetadataServiceCalls;
+
+    private WebdriverGenerationContext(
+            final ClassOrInterfaceTypeDetails controllerTypeDetails,
+            final LogicalPath path,
+            final WebScaffoldMetadata webScaffoldMetadata,
+            final ClassOrInterfaceTypeDetails formBackingTypeDetails,
+            final MemberDetails formBackingMemberDetails,
+            final List<FieldMetadata> fields, final int metadataServiceCalls,
+            final int typeLocationServiceCalls,
+            final int memberDetailsScannerCalls,
+            final int webMetadataServiceCalls) {
+        this.controllerTypeDetails = controllerTypeDetails;
+        this.path = path;
+        this.webScaffoldMetadata = webScaffoldMetadata;
+        this.formBackingTypeDetails = formBackingTypeDetails;
+        this.formBackingMemberDetails = formBackingMemberDetails;
+        this.fields = fields;
+        this.metadataServiceCalls = metadataServiceCalls;
+        this.typeLocationServiceCalls = typeLocationServiceCalls;
+        this.memberDetailsScannerCalls = memberDetailsScannerCalls;
+        this.webMetadataServiceCalls = webMetadataServiceCalls;
+    }
+
+    public JavaType getController() {
+        return controllerTypeDetails.getName();
+    }
+
+    public ClassOrInterfaceTypeDetails getControllerTypeDetails() {
+        return controllerTypeDetails;
+    }
+
+    /**
+     * @return the logical path of the controller's module
+     */
+    public LogicalPath getPath() {
+        return path;
+    }
+
+    public WebScaffoldMetadata getWebScaffoldMetadata() {
+        return webScaffoldMetadata;
+    }
+
+    public JavaType getFormBackingType() {
+        return formBackingTypeDetails.getName();
+    }
+
+    public ClassOrInterfaceTypeDetails getFormBackingTypeDetails() {
+        return formBackingTypeDetails;
+    }
+
+    public MemberDetails getFormBackingMemberDetails() {
+        return formBackingMemberDetails;
+    }
+
+    /**
+     * Returns the scaffold eligible fields of the form backing object that are
+     * rendered as simple inputs, i.e. neither collections nor references to
+     * other project types.
+     *
+     * @return an unmodifiable list
+     */
+    public List<FieldMetadata> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the number of metadata and type lookups it took to resolve this
+     *         context
+     */
+    public int getLookupCount() {
+        return metadataServiceCalls + typeLocationServiceCalls
+                + memberDetailsScannerCalls + webMetadataServiceCalls;
+    }
+
+    /**
+     * @return the number of {@link MetadataService} calls among the lookups
+     */
+    public int getMetadataServiceCalls() {
+        return metadataServiceCalls;
+    }
+
+    /**
+     * @return the number of {@link TypeLocationService} calls among the
+     *         lookups
+     */
+    public int getTypeLocationServiceCalls() {
+        return typeLocationServiceCalls;
+    }
+
+    /**
+     * @return the number of {@link MemberDetailsScanner} calls among the
+     *         lookups
+     */
+    public int getMemberDetailsScannerCalls() {
+        return memberDetailsScannerCalls;
+    }
+
+    /**
+     * @return the number of {@link WebMetadataService} calls among the lookups
+     */
+    public int getWebMetadataServiceCalls() {
+        return webMetadataServiceCalls;
+    }
+
+    @Override
+    public String toString() {
+        final ToStringBuilder builder = new ToStringBuilder(this);
+        builder.append("controller", getController());
+        builder.append("formBackingType", getFormBackingType());
+        builder.append("fields", fields.size());
+        builder.append("lookupCount", getLookupCount());
+        return builder.toString();
+    }
+}
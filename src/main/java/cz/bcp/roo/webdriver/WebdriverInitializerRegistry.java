@@ -0,0 +1,20 @@
+package cz.bcp.roo.webdriver;
+
+import org.springframework.roo.classpath.details.FieldMetadata;
+
+/**
+ * Dispatches each field of a form backing object to the
+ * {@link WebdriverInitializerStrategy} for its type.
+ * 
+ * @since 1.1
+ */
+public interface WebdriverInitializerRegistry {
+
+    /**
+     * Returns the test value for the given field.
+     * 
+     * @param field the field of the form backing object
+     * @return the text to type; never <code>null</code>
+     */
+    String getInitializer(FieldMetadata field);
+}
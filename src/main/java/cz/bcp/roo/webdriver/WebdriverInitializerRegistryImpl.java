@@ -0,0 +1,301 @@
+package cz.bcp.roo.webdriver;
+
+import static org.springframework.roo.model.JavaType.BOOLEAN_OBJECT;
+import static org.springframework.roo.model.JavaType.BOOLEAN_PRIMITIVE;
+import static org.springframework.roo.model.JavaType.DOUBLE_OBJECT;
+import static org.springframework.roo.model.JavaType.DOUBLE_PRIMITIVE;
+import static org.springframework.roo.model.JavaType.FLOAT_OBJECT;
+import static org.springframework.roo.model.JavaType.FLOAT_PRIMITIVE;
+import static org.springframework.roo.model.JavaType.INT_OBJECT;
+import static org.springframework.roo.model.JavaType.INT_PRIMITIVE;
+import static org.springframework.roo.model.JavaType.LONG_OBJECT;
+import static org.springframework.roo.model.JavaType.LONG_PRIMITIVE;
+import static org.springframework.roo.model.JavaType.SHORT_OBJECT;
+import static org.springframework.roo.model.JavaType.SHORT_PRIMITIVE;
+import static org.springframework.roo.model.JavaType.STRING;
+import static org.springframework.roo.model.JdkJavaType.BIG_DECIMAL;
+import static org.springframework.roo.model.JdkJavaType.CALENDAR;
+import static org.springframework.roo.model.JdkJavaType.DATE;
+import static org.springframework.roo.model.Jsr303JavaType.FUTURE;
+import static org.springframework.roo.model.Jsr303JavaType.MIN;
+import static org.springframework.roo.model.Jsr303JavaType.PAST;
+import static org.springframework.roo.model.SpringJavaType.DATE_TIME_FORMAT;
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.ReferenceStrategy;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.MemberFindingUtils;
+import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.classpath.operations.DateTime;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Implementation of {@link WebdriverInitializerRegistry}. The built-in
+ * strategies are indexed by field type once on activation, so a field costs a
+ * single map lookup instead of a chain of type comparisons, and date formats
+ * are created once per <code>@DateTimeFormat</code> style. Strategies
+ * published by other bundles are bound and unbound at run time.
+ *
+ * @since 1.1
+ */
+@Component
+@Service
+@Reference(name = "strategy", strategy = ReferenceStrategy.EVENT, policy = ReferencePolicy.DYNAMIC, referenceInterface = WebdriverInitializerStrategy.class, cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
+public class WebdriverInitializerRegistryImpl implements WebdriverInitializerRegistry {
+
+    private static final String DEFAULT_INITIALIZER = " ";
+    private static final String EMAIL_INITIALIZER = "some@email.com";
+    private static final JavaSymbolName VALUE = new JavaSymbolName("value");
+    private static final JavaSymbolName STYLE = new JavaSymbolName("style");
+
+    @Reference private WebdriverStatistics statistics;
+
+    // Fields
+    private final List<WebdriverInitializerStrategy> fieldStrategies = new CopyOnWriteArrayList<WebdriverInitializerStrategy>();
+    private final ConcurrentMap<JavaType, List<WebdriverInitializerStrategy>> typeStrategies = new ConcurrentHashMap<JavaType, List<WebdriverInitializerStrategy>>();
+    private final ConcurrentMap<String, DateFormat> dateFormats = new ConcurrentHashMap<String, DateFormat>();
+    private volatile Map<JavaType, WebdriverInitializerStrategy> builtInStrategies = new HashMap<JavaType, WebdriverInitializerStrategy>();
+
+    protected void activate(final ComponentContext context) {
+        final Map<JavaType, WebdriverInitializerStrategy> strategies = new HashMap<JavaType, WebdriverInitializerStrategy>();
+        for (final WebdriverInitializerStrategy strategy : getBuiltInStrategies()) {
+            for (final JavaType fieldType : strategy.getFieldTypes()) {
+                strategies.put(fieldType, strategy);
+            }
+        }
+        builtInStrategies = strategies;
+    }
+
+    protected void deactivate(final ComponentContext context) {
+        dateFormats.clear();
+    }
+
+    protected void bindStrategy(final WebdriverInitializerStrategy strategy) {
+        final Collection<JavaType> fieldTypes = strategy.getFieldTypes();
+        if (fieldTypes.isEmpty()) {
+            fieldStrategies.add(0, strategy);
+            return;
+        }
+        for (final JavaType fieldType : fieldTypes) {
+            List<WebdriverInitializerStrategy> strategies = typeStrategies.get(fieldType);
+            if (strategies == null) {
+                final List<WebdriverInitializerStrategy> newStrategies = new CopyOnWriteArrayList<WebdriverInitializerStrategy>();
+                strategies = typeStrategies.putIfAbsent(fieldType, newStrategies);
+                if (strategies == null) {
+                    strategies = newStrategies;
+                }
+            }
+            // The most recently registered strategy wins
+            strategies.add(0, strategy);
+        }
+    }
+
+    protected void unbindStrategy(final WebdriverInitializerStrategy strategy) {
+        fieldStrategies.remove(strategy);
+        for (final List<WebdriverInitializerStrategy> strategies : typeStrategies.values()) {
+            strategies.remove(strategy);
+        }
+    }
+
+    public String getInitializer(final FieldMetadata field) {
+        Validate.notNull(field, "Field required");
+        final long start = System.nanoTime();
+        try {
+            return resolveInitializer(field);
+        }
+        finally {
+            statistics.record("getInitializer", start);
+        }
+    }
+
+    private String resolveInitializer(final FieldMetadata field) {
+        String initializer = getInitializer(field, fieldStrategies);
+        if (initializer != null) {
+            return initializer;
+        }
+        final String fieldName = field.getFieldName().getSymbolName();
+        if (fieldName.contains("email") || fieldName.contains("Email")) {
+            return EMAIL_INITIALIZER;
+        }
+        final List<WebdriverInitializerStrategy> strategies = typeStrategies.get(field.getFieldType());
+        if (strategies != null) {
+            initializer = getInitializer(field, strategies);
+            if (initializer != null) {
+                return initializer;
+            }
+        }
+        final WebdriverInitializerStrategy builtInStrategy = builtInStrategies.get(field.getFieldType());
+        if (builtInStrategy != null) {
+            initializer = builtInStrategy.getInitializer(field);
+        }
+        return initializer == null ? DEFAULT_INITIALIZER : initializer;
+    }
+
+    private String getInitializer(final FieldMetadata field, final List<WebdriverInitializerStrategy> strategies) {
+        for (final WebdriverInitializerStrategy strategy : strategies) {
+            final String initializer = strategy.getInitializer(field);
+            if (initializer != null) {
+                return initializer;
+            }
+        }
+        return null;
+    }
+
+    private List<WebdriverInitializerStrategy> getBuiltInStrategies() {
+        return Arrays.<WebdriverInitializerStrategy> asList(
+                new BuiltInStrategy(STRING) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return "some" + field.getFieldName().getSymbolNameCapitalisedFirstLetter() + getIndex(field);
+                    }
+                },
+                new BuiltInStrategy(DATE, CALENDAR) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return getDateInitializer(field);
+                    }
+                },
+                new BuiltInStrategy(BOOLEAN_OBJECT, BOOLEAN_PRIMITIVE) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return Boolean.FALSE.toString();
+                    }
+                },
+                new BuiltInStrategy(INT_OBJECT, INT_PRIMITIVE) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return Integer.toString(getIndex(field));
+                    }
+                },
+                new BuiltInStrategy(DOUBLE_OBJECT, DOUBLE_PRIMITIVE) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return Double.toString(getIndex(field));
+                    }
+                },
+                new BuiltInStrategy(FLOAT_OBJECT, FLOAT_PRIMITIVE) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return Float.toString(getIndex(field));
+                    }
+                },
+                new BuiltInStrategy(LONG_OBJECT, LONG_PRIMITIVE) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return Long.toString(getIndex(field));
+                    }
+                },
+                new BuiltInStrategy(SHORT_OBJECT, SHORT_PRIMITIVE) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return Short.toString(getIndex(field));
+                    }
+                },
+                new BuiltInStrategy(BIG_DECIMAL) {
+                    public String getInitializer(final FieldMetadata field) {
+                        return new BigDecimal(getIndex(field)).toString();
+                    }
+                });
+    }
+
+    /**
+     * Returns a date a month and a year and a day away from today, in the
+     * past or the future if the field requires so, formatted in the field's
+     * <code>@DateTimeFormat</code> style.
+     */
+    private String getDateInitializer(final FieldMetadata field) {
+        final List<AnnotationMetadata> annotations = field.getAnnotations();
+        final Calendar cal = Calendar.getInstance();
+        if (MemberFindingUtils.getAnnotationOfType(annotations, PAST) != null) {
+            cal.add(Calendar.YEAR, -1);
+            cal.add(Calendar.MONTH, -1);
+            cal.add(Calendar.DAY_OF_MONTH, -1);
+        }
+        else if (MemberFindingUtils.getAnnotationOfType(annotations, FUTURE) != null) {
+            cal.add(Calendar.YEAR, 1);
+            cal.add(Calendar.MONTH, 1);
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        String style = null;
+        final AnnotationMetadata dateTimeFormat = MemberFindingUtils.getAnnotationOfType(annotations, DATE_TIME_FORMAT);
+        if (dateTimeFormat != null) {
+            final AnnotationAttributeValue<?> value = dateTimeFormat.getAttribute(STYLE);
+            if (value != null) {
+                style = value.getValue().toString();
+            }
+        }
+        final DateFormat dateFormat = getDateFormat(style);
+        // Date formats are not thread safe
+        synchronized (dateFormat) {
+            return dateFormat.format(cal.getTime());
+        }
+    }
+
+    private DateFormat getDateFormat(final String style) {
+        final String key = style == null ? "" : style;
+        DateFormat dateFormat = dateFormats.get(key);
+        if (dateFormat == null) {
+            final DateFormat newDateFormat = createDateFormat(style);
+            dateFormat = dateFormats.putIfAbsent(key, newDateFormat);
+            if (dateFormat == null) {
+                dateFormat = newDateFormat;
+            }
+        }
+        return dateFormat;
+    }
+
+    private DateFormat createDateFormat(final String style) {
+        final Locale locale = Locale.getDefault();
+        if (style == null) {
+            return DateFormat.getDateInstance(DateFormat.SHORT, locale);
+        }
+        if (style.startsWith("-")) {
+            return DateFormat.getTimeInstance(DateTime.parseDateFormat(style.charAt(1)), locale);
+        }
+        if (style.endsWith("-")) {
+            return DateFormat.getDateInstance(DateTime.parseDateFormat(style.charAt(0)), locale);
+        }
+        return DateFormat.getDateTimeInstance(DateTime.parseDateFormat(style.charAt(0)),
+                DateTime.parseDateFormat(style.charAt(1)), locale);
+    }
+
+    /**
+     * Returns the smallest value of a numeric field, i.e. its
+     * <code>@Min</code> value or 1.
+     */
+    private static short getIndex(final FieldMetadata field) {
+        final AnnotationMetadata min = MemberFindingUtils.getAnnotationOfType(field.getAnnotations(), MIN);
+        if (min != null) {
+            final AnnotationAttributeValue<?> value = min.getAttribute(VALUE);
+            if (value != null) {
+                return Short.parseShort(value.getValue().toString());
+            }
+        }
+        return 1;
+    }
+
+    private abstract static class BuiltInStrategy implements WebdriverInitializerStrategy {
+
+        private final Collection<JavaType> fieldTypes;
+
+        BuiltInStrategy(final JavaType... fieldTypes) {
+            this.fieldTypes = Arrays.asList(fieldTypes);
+        }
+
+        public Collection<JavaType> getFieldTypes() {
+            return fieldTypes;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package cz.bcp.roo.webdriver;
+
+import java.util.Collection;
+
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Computes the text a generated test types into the form input of a field.
+ * Other bundles can publish implementations as OSGi services to supply test
+ * values for types the add-on does not know, e.g. enums or embedded types, or
+ * for constrained fields such as <code>@Pattern</code> strings. A registered
+ * strategy takes precedence over the add-on's built-in ones.
+ * 
+ * @since 1.1
+ * @see WebdriverInitializerRegistry
+ */
+public interface WebdriverInitializerStrategy {
+
+    /**
+     * Returns the field types this strategy is consulted for.
+     * 
+     * @return the types; an empty collection makes the strategy see every
+     *         field, before any strategy registered for specific types
+     */
+    Collection<JavaType> getFieldTypes();
+
+    /**
+     * Returns the test value for the given field.
+     * 
+     * @param field the field of the form backing object
+     * @return the text to type, or <code>null</code> to leave the field to the
+     *         next strategy
+     */
+    String getInitializer(FieldMetadata field);
+}
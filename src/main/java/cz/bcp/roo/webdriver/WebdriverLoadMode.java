@@ -0,0 +1,21 @@
+package cz.bcp.roo.webdriver;
+
+/**
+ * How a generated load test drives the create flow of a scaffolded controller.
+ *
+ * @since 1.1
+ */
+public enum WebdriverLoadMode {
+
+    /**
+     * Posts the create form directly, without a browser; measures the server
+     * side of the flow and scales to many sessions
+     */
+    HTTP,
+
+    /**
+     * Fills and submits the create form in pooled browser sessions, e.g.
+     * HtmlUnit; measures the flow as users see it
+     */
+    BROWSER
+}
@@ -0,0 +1,24 @@
+package cz.bcp.roo.webdriver;
+
+/**
+ * Index of the element ids the scaffolded JSPX views of a module render for
+ * the fields of form backing objects, so generated tests locate the elements
+ * that exist instead of guessing their ids. A view is parsed again only once
+ * its file changes.
+ *
+ * @since 1.1
+ */
+public interface WebdriverLocatorIndex {
+
+    /**
+     * Returns the ids rendered by the views in
+     * <code>WEB-INF/views/&lt;path&gt;</code> of the given module.
+     *
+     * @param moduleName the module of the controller
+     * @param path the path the controller is mapped to, e.g.
+     *            <code>people</code>
+     * @return the ids; {@link WebdriverViewIds#NONE} if the views cannot be
+     *         found
+     */
+    WebdriverViewIds getViewIds(String moduleName, String path);
+}
@@ -0,0 +1,171 @@
+package cz.bcp.roo.webdriver;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.support.logging.HandlerUtils;
+
+/**
+ * Implementation of {@link WebdriverLocatorIndex} reading the views with a
+ * streaming parser. Only the field tags of Roo's
+ * <code>WEB-INF/tags/form/fields</code> directory are looked at; each is
+ * rendered as <code>_&lt;field&gt;_id</code>, except for
+ * <code>field:display</code>, which is rendered as
+ * <code>_&lt;id&gt;_&lt;field&gt;_id</code>. The ids of every view are kept
+ * until its modification time or size changes.
+ *
+ * @since 1.1
+ */
+@Component
+@Service
+public class WebdriverLocatorIndexImpl implements WebdriverLocatorIndex {
+
+    private static final Logger LOGGER = HandlerUtils
+            .getLogger(WebdriverLocatorIndexImpl.class);
+
+    private static final String FIELD_TAGS = "/WEB-INF/tags/form/fields";
+    private static final String VIEW_EXTENSION = ".jspx";
+    private static final FileFilter VIEW_FILTER = new FileFilter() {
+        public boolean accept(final File file) {
+            return file.isFile() && file.getName().endsWith(VIEW_EXTENSION);
+        }
+    };
+
+    @Reference private ProjectOperations projectOperations;
+    @Reference private WebdriverStatistics statistics;
+
+    private final ConcurrentMap<String, IndexedView> views = new ConcurrentHashMap<String, IndexedView>();
+    private XMLInputFactory inputFactory;
+
+    protected void activate(final ComponentContext context) {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    protected void deactivate(final ComponentContext context) {
+        views.clear();
+    }
+
+    public WebdriverViewIds getViewIds(final String moduleName, final String path) {
+        final File directory = new File(projectOperations.getPathResolver().getIdentifier(
+                LogicalPath.getInstance(Path.SRC_MAIN_WEBAPP, moduleName), "WEB-INF/views/" + path));
+        final File[] files = directory.listFiles(VIEW_FILTER);
+        if (files == null) {
+            return WebdriverViewIds.NONE;
+        }
+        final Map<String, Map<String, String>> fieldIdsByView = new HashMap<String, Map<String, String>>();
+        for (final File file : files) {
+            final Map<String, String> fieldIds = getFieldIds(file);
+            if (fieldIds != null) {
+                final String name = file.getName();
+                fieldIdsByView.put(name.substring(0, name.length() - VIEW_EXTENSION.length()), fieldIds);
+            }
+        }
+        return new WebdriverViewIds(fieldIdsByView);
+    }
+
+    /**
+     * Returns the ids of the field tags of the given view, parsing it only if
+     * it has changed since it was last indexed.
+     *
+     * @return the ids keyed by field name, or <code>null</code> if the view
+     *         cannot be parsed
+     */
+    private Map<String, String> getFieldIds(final File file) {
+        final String key = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final IndexedView view = views.get(key);
+        if (view != null && view.lastModified == lastModified && view.length == length) {
+            return view.fieldIds;
+        }
+
+        final Map<String, String> fieldIds;
+        try {
+            fieldIds = Collections.unmodifiableMap(parse(file));
+        }
+        catch (final IOException e) {
+            LOGGER.warning("Could not read view '" + key + "': " + e.getMessage());
+            views.remove(key);
+            return null;
+        }
+        catch (final XMLStreamException e) {
+            LOGGER.warning("Could not parse view '" + key + "'; the ids of its elements are guessed: " + e.getMessage());
+            views.remove(key);
+            return null;
+        }
+        statistics.count(WebdriverStatistics.VIEWS_PARSED, 1);
+        views.put(key, new IndexedView(lastModified, length, fieldIds));
+        return fieldIds;
+    }
+
+    private Map<String, String> parse(final File file) throws IOException, XMLStreamException {
+        final Map<String, String> fieldIds = new HashMap<String, String>();
+        InputStream inputStream = null;
+        XMLStreamReader reader = null;
+        try {
+            inputStream = new FileInputStream(file);
+            reader = inputFactory.createXMLStreamReader(inputStream);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT || reader.getNamespaceURI() == null
+                        || !reader.getNamespaceURI().endsWith(FIELD_TAGS)) {
+                    continue;
+                }
+                final String field = reader.getAttributeValue(null, "field");
+                final String id = reader.getAttributeValue(null, "id");
+                if (field == null || id == null || "false".equals(reader.getAttributeValue(null, "render"))) {
+                    continue;
+                }
+                if ("display".equals(reader.getLocalName())) {
+                    fieldIds.put(field, "_" + id + "_" + field + "_id");
+                }
+                else {
+                    fieldIds.put(field, "_" + field + "_id");
+                }
+            }
+            return fieldIds;
+        }
+        finally {
+            if (reader != null) {
+                reader.close();
+            }
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    private static final class IndexedView {
+
+        final long lastModified;
+        final long length;
+        final Map<String, String> fieldIds;
+
+        IndexedView(final long lastModified, final long length, final Map<String, String> fieldIds) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.fieldIds = fieldIds;
+        }
+    }
+}
@@ -1,18 +1,39 @@
 package cz.bcp.roo.webdriver;
 
+import static org.springframework.roo.model.JdkJavaType.CALENDAR;
+import static org.springframework.roo.model.JdkJavaType.DATE;
+import static org.springframework.roo.model.SpringJavaType.DATE_TIME_FORMAT;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Modifier;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.springframework.roo.classpath.PhysicalTypeIdentifierNamingUtils;
 import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.ItdTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.MemberFindingUtils;
+import org.springframework.roo.classpath.details.MethodMetadata;
+import org.springframework.roo.classpath.details.MethodMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
 import org.springframework.roo.classpath.itd.AbstractItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.project.LogicalPath;
 
 /**
  * This type produces metadata for a new ITD. It uses an {@link ItdTypeDetailsBuilder} provided by 
- * {@link AbstractItdTypeDetailsProvidingMetadataItem} to register a field in the ITD and a new method.
+ * {@link AbstractItdTypeDetailsProvidingMetadataItem} to introduce the methods that fill in the create
+ * form of the form backing object and verify the resulting show page into the annotated test class.
  * 
  * @since 1.1.0
  */
@@ -21,6 +42,40 @@ public class WebdriverMetadata extends AbstractItdTypeDetailsProvidingMetadataIt
     // Constants
     private static final String PROVIDES_TYPE_STRING = WebdriverMetadata.class.getName();
     private static final String PROVIDES_TYPE = MetadataIdentificationUtils.create(PROVIDES_TYPE_STRING);
+    
+    private static final JavaType WEBDRIVER = new JavaType("org.openqa.selenium.WebDriver");
+    private static final JavaType BY = new JavaType("org.openqa.selenium.By");
+    private static final JavaType WEB_ELEMENT = new JavaType("org.openqa.selenium.WebElement");
+    private static final JavaType WEBDRIVER_WAIT = new JavaType("org.openqa.selenium.support.ui.WebDriverWait");
+    private static final JavaType EXPECTED_CONDITIONS = new JavaType("org.openqa.selenium.support.ui.ExpectedConditions");
+    private static final JavaType ASSERT = new JavaType("org.junit.Assert");
+    private static final JavaType JAVASCRIPT_EXECUTOR = new JavaType("org.openqa.selenium.JavascriptExecutor");
+    private static final JavaType LIST = new JavaType("java.util.List");
+    private static final JavaType DATE_FORMAT = new JavaType("java.text.DateFormat");
+    private static final JavaSymbolName RECORD = new JavaSymbolName("record");
+    private static final JavaSymbolName STYLE = new JavaSymbolName("style");
+    private static final JavaSymbolName FILL_FORM = new JavaSymbolName("fillForm");
+    private static final JavaSymbolName VERIFY_SHOW_PAGE = new JavaSymbolName("verifyShowPage");
+    private static final JavaSymbolName FORM_DATA = new JavaSymbolName("getFormData");
+    private static final JavaSymbolName VERIFY_SHOW_MARKUP = new JavaSymbolName("verifyShowMarkup");
+    private static final JavaSymbolName SET_SELECTED = new JavaSymbolName("setSelected");
+    private static final JavaSymbolName IS_LEAN = new JavaSymbolName("isLean");
+    
+    /**
+     * Sets each input given as an id and value pair and fires the input and
+     * change events the Dojo widgets of Spring JS listen to
+     */
+    private static final String FILL_SCRIPT = "var a = arguments; for (var i = 0; i < a.length; i += 2) { "
+            + "var e = document.getElementById(a[i]); if (!e) { throw new Error('No input ' + a[i]); } e.value = a[i + 1]; "
+            + "var t = ['input', 'change']; for (var j = 0; j < t.length; j++) { "
+            + "var v = document.createEvent('HTMLEvents'); v.initEvent(t[j], true, true); e.dispatchEvent(v); } }";
+    
+    /**
+     * Returns the text of each element given by its id, or null for a missing
+     * element
+     */
+    private static final String READ_SCRIPT = "var r = []; for (var i = 0; i < arguments.length; i++) { "
+            + "var e = document.getElementById(arguments[i]); r.push(e == null ? null : (e.innerText || e.textContent || '')); } return r;";
 
     public static final String getMetadataIdentiferType() {
         return PROVIDES_TYPE;
@@ -42,9 +97,427 @@ public class WebdriverMetadata extends AbstractItdTypeDetailsProvidingMetadataIt
         return PhysicalTypeIdentifierNamingUtils.isValid(PROVIDES_TYPE_STRING, metadataIdentificationString);
     }
     
-    public WebdriverMetadata(String identifier, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata) {
+    // Fields
+    private final WebdriverAnnotationValues annotationValues;
+    private final JavaType formBackingType;
+    private final List<FieldMetadata> fields;
+    private final List<FieldMetadata> inputFields;
+    private final List<FieldMetadata> resultFields;
+    private final WebdriverViewIds viewIds;
+    private final Map<JavaSymbolName, String> initializers;
+    
+    /**
+     * Constructor
+     * 
+     * @param identifier the metadata id
+     * @param aspectName the name of the ITD
+     * @param governorPhysicalTypeMetadata the annotated test class
+     * @param annotationValues the values of its {@link RooWebdriver} annotation
+     * @param formBackingType the form backing object of the tested controller
+     * @param fields the fields rendered as simple inputs on the create form
+     * @param initializers the test value of each of these fields, keyed by field name
+     * @param viewIds the ids of the elements the controller's views render for these fields
+     */
+    public WebdriverMetadata(String identifier, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata,
+            WebdriverAnnotationValues annotationValues, JavaType formBackingType, List<FieldMetadata> fields,
+            Map<JavaSymbolName, String> initializers, WebdriverViewIds viewIds) {
         super(identifier, aspectName, governorPhysicalTypeMetadata);
         Validate.isTrue(isValid(identifier), "Metadata identification string '" + identifier + "' does not appear to be a valid");
+        Validate.notNull(annotationValues, "Annotation values required");
+        Validate.notNull(formBackingType, "Form backing type required");
+        Validate.notNull(fields, "Fields required");
+        Validate.notNull(initializers, "Initializers required");
+        Validate.notNull(viewIds, "View ids required");
+        
+        this.annotationValues = annotationValues;
+        this.formBackingType = formBackingType;
+        this.fields = Collections.unmodifiableList(new ArrayList<FieldMetadata>(fields));
+        this.initializers = initializers;
+        this.viewIds = viewIds;
+        
+        // Elements missing from the views are left out instead of being waited for
+        this.inputFields = viewIds.getInputFields(this.fields);
+        this.resultFields = viewIds.getResultFields(formBackingType, this.fields);
+        
+        if (!isValid()) {
+            return;
+        }
+        
+        // Browserless tests only post the form, so they get neither the driver methods nor their imports
+        if (annotationValues.isBrowser()) {
+            builder.getImportRegistrationResolver().addImports(WEBDRIVER, BY, WEBDRIVER_WAIT, EXPECTED_CONDITIONS, ASSERT, JAVASCRIPT_EXECUTOR, LIST);
+            addMethod(getFillFormMethod(false));
+            addMethod(getVerifyShowPageMethod(false));
+            addMethod(getIsLeanMethod());
+            for (final FieldMetadata field : inputFields) {
+                if (isBoolean(field)) {
+                    builder.getImportRegistrationResolver().addImport(WEB_ELEMENT);
+                    addMethod(getSetSelectedMethod());
+                    break;
+                }
+            }
+            if (annotationValues.getRecords() > 1 || annotationValues.isJourney()) {
+                builder.getImportRegistrationResolver().addImports(formBackingType, DATE_FORMAT);
+                addMethod(getFillFormMethod(true));
+                addMethod(getVerifyShowPageMethod(true));
+            }
+        }
+        if (annotationValues.isFormData()) {
+            builder.getImportRegistrationResolver().addImport(ASSERT);
+            addMethod(getFormDataMethod());
+            addMethod(getVerifyShowMarkupMethod());
+        }
+        
+        // Create a representation of the desired output ITD
+        itdTypeDetails = builder.build();
+    }
+    
+    /**
+     * Types the test value of every field into its input on the create form.
+     * With a scripted fill only the first input and date inputs, whose
+     * widgets parse keystrokes, are typed into; all other inputs are set by a
+     * single script, saving two wire round-trips per field. Boolean
+     * checkboxes are clicked if their state differs from the value.
+     * 
+     * @param record whether the values are read from a record of the form
+     *            backing object instead of being the fixed test values
+     */
+    private MethodMetadataBuilder getFillFormMethod(final boolean record) {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        final List<FieldMetadata> scriptedFields = new ArrayList<FieldMetadata>();
+        if (annotationValues.isTimed()) {
+            bodyBuilder.appendFormalLine("long start;");
+        }
+        for (final FieldMetadata field : inputFields) {
+            if (isBoolean(field)) {
+                appendTimedStatement(bodyBuilder, "setSelected(driver.findElement(By.id(\"" + viewIds.getInputId(field) + "\")), " + getBooleanValue(field, record) + ");",
+                        "fill " + field.getFieldName().getSymbolName());
+            }
+            else if (annotationValues.isScriptedFill() && !field.equals(inputFields.get(0)) && !isDate(field)) {
+                scriptedFields.add(field);
+            }
+            else {
+                appendTimedStatement(bodyBuilder, "driver.findElement(By.id(\"" + viewIds.getInputId(field) + "\")).sendKeys(" + getValue(field, record) + ");",
+                        "fill " + field.getFieldName().getSymbolName());
+            }
+        }
+        if (!scriptedFields.isEmpty()) {
+            if (annotationValues.isTimed()) {
+                bodyBuilder.appendFormalLine("start = System.nanoTime();");
+            }
+            bodyBuilder.appendFormalLine("((JavascriptExecutor) driver).executeScript(\"" + FILL_SCRIPT + "\",");
+            bodyBuilder.indent();
+            for (int i = 0; i < scriptedFields.size(); i++) {
+                final FieldMetadata field = scriptedFields.get(i);
+                bodyBuilder.appendFormalLine("\"" + viewIds.getInputId(field) + "\", " + getValue(field, record) + (i < scriptedFields.size() - 1 ? "," : ");"));
+            }
+            bodyBuilder.indentRemove();
+            if (annotationValues.isTimed()) {
+                bodyBuilder.appendFormalLine("recordTiming(\"fill script\", start);");
+            }
+        }
+        return getDriverMethod(FILL_FORM, bodyBuilder, record);
+    }
+    
+    /**
+     * Appends the statement, timing it through the test's
+     * <code>recordTiming</code> method if the test is timed.
+     */
+    private void appendTimedStatement(final InvocableMemberBodyBuilder bodyBuilder, final String statement, final String step) {
+        if (!annotationValues.isTimed()) {
+            bodyBuilder.appendFormalLine(statement);
+            return;
+        }
+        bodyBuilder.appendFormalLine("start = System.nanoTime();");
+        bodyBuilder.appendFormalLine(statement);
+        bodyBuilder.appendFormalLine("recordTiming(\"" + step + "\", start);");
+    }
+    
+    private boolean isDate(final FieldMetadata field) {
+        return field.getFieldType().equals(DATE) || field.getFieldType().equals(CALENDAR);
+    }
+    
+    private boolean isBoolean(final FieldMetadata field) {
+        return field.getFieldType().equals(JavaType.BOOLEAN_PRIMITIVE) || field.getFieldType().equals(JavaType.BOOLEAN_OBJECT);
+    }
+    
+    /**
+     * Clicks the checkbox unless it is in the given state already, as typing
+     * into a checkbox does not toggle it.
+     */
+    private MethodMetadataBuilder getSetSelectedMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("if (checkbox.isSelected() != selected) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("checkbox.click();");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        final List<JavaSymbolName> parameterNames = new ArrayList<JavaSymbolName>();
+        parameterNames.add(new JavaSymbolName("checkbox"));
+        parameterNames.add(new JavaSymbolName("selected"));
+        return new MethodMetadataBuilder(getId(), Modifier.PRIVATE, SET_SELECTED, JavaType.VOID_PRIMITIVE,
+                AnnotatedJavaType.convertFromJavaTypes(WEB_ELEMENT, JavaType.BOOLEAN_PRIMITIVE), parameterNames, bodyBuilder);
+    }
+    
+    /**
+     * Asserts the show page displays the test value of every field. Once the
+     * first result is visible the texts of all results are read by a single
+     * script and compared locally, and every mismatch is reported together.
+     * 
+     * @param record whether the values are read from a record of the form
+     *            backing object instead of being the fixed test values
+     */
+    private MethodMetadataBuilder getVerifyShowPageMethod(final boolean record) {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        if (resultFields.isEmpty()) {
+            return getDriverMethod(VERIFY_SHOW_PAGE, bodyBuilder, record);
+        }
+        bodyBuilder.appendFormalLine("WebDriverWait wait = new WebDriverWait(driver, " + annotationValues.getTimeout() + ", " + annotationValues.getPollInterval() + ");");
+        bodyBuilder.appendFormalLine("wait.until(ExpectedConditions.visibilityOfElementLocated(By.id(\"" + viewIds.getResultId(formBackingType, resultFields.get(0)) + "\")));");
+        bodyBuilder.appendFormalLine("final String[] ids = {");
+        bodyBuilder.indent();
+        for (int i = 0; i < resultFields.size(); i++) {
+            bodyBuilder.appendFormalLine("\"" + viewIds.getResultId(formBackingType, resultFields.get(i)) + "\"" + (i < resultFields.size() - 1 ? "," : ""));
+        }
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("};");
+        bodyBuilder.appendFormalLine("final String[] expected = {");
+        bodyBuilder.indent();
+        for (int i = 0; i < resultFields.size(); i++) {
+            bodyBuilder.appendFormalLine(getValue(resultFields.get(i), record) + (i < resultFields.size() - 1 ? "," : ""));
+        }
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("};");
+        bodyBuilder.appendFormalLine("final List<?> texts = (List<?>) ((JavascriptExecutor) driver).executeScript(\"" + READ_SCRIPT + "\", (Object[]) ids);");
+        bodyBuilder.appendFormalLine("final StringBuilder mismatches = new StringBuilder();");
+        bodyBuilder.appendFormalLine("for (int i = 0; i < ids.length; i++) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("final String text = texts.get(i) == null ? null : texts.get(i).toString().trim();");
+        bodyBuilder.appendFormalLine("if (!expected[i].equals(text)) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("mismatches.append(\"\\n\").append(ids[i]).append(\": expected <\").append(expected[i]).append(\"> but was <\").append(text).append('>');");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("if (mismatches.length() > 0) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("Assert.fail(\"The show page does not display the saved values:\" + mismatches);");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        return getDriverMethod(VERIFY_SHOW_PAGE, bodyBuilder, record);
+    }
+    
+    /**
+     * Returns the test values as the body of a create form post. They are
+     * encoded here, so the method merely returns a constant.
+     */
+    private MethodMetadataBuilder getFormDataMethod() {
+        final StringBuilder formData = new StringBuilder();
+        try {
+            for (final FieldMetadata field : fields) {
+                if (formData.length() > 0) {
+                    formData.append('&');
+                }
+                formData.append(URLEncoder.encode(field.getFieldName().getSymbolName(), "UTF-8")).append('=')
+                        .append(URLEncoder.encode(initializers.get(field.getFieldName()), "UTF-8"));
+            }
+        }
+        catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("return \"" + formData + "\";");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, FORM_DATA, JavaType.STRING, bodyBuilder);
+    }
+    
+    /**
+     * Asserts the markup of the show page contains the test value of every
+     * field as the content of its result element. The values are escaped
+     * here the way <code>c:out</code> renders them, so the markup is only
+     * searched, never parsed.
+     */
+    private MethodMetadataBuilder getVerifyShowMarkupMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("final String[] ids = {");
+        bodyBuilder.indent();
+        for (int i = 0; i < resultFields.size(); i++) {
+            bodyBuilder.appendFormalLine("\"" + viewIds.getResultId(formBackingType, resultFields.get(i)) + "\"" + (i < resultFields.size() - 1 ? "," : ""));
+        }
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("};");
+        bodyBuilder.appendFormalLine("final String[] expected = {");
+        bodyBuilder.indent();
+        for (int i = 0; i < resultFields.size(); i++) {
+            bodyBuilder.appendFormalLine("\"" + StringEscapeUtils.escapeJava(escapeMarkup(initializers.get(resultFields.get(i).getFieldName()))) + "\"" + (i < resultFields.size() - 1 ? "," : ""));
+        }
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("};");
+        bodyBuilder.appendFormalLine("final StringBuilder mismatches = new StringBuilder();");
+        bodyBuilder.appendFormalLine("for (int i = 0; i < ids.length; i++) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("String text = null;");
+        bodyBuilder.appendFormalLine("final int element = markup.indexOf(\"id=\\\"\" + ids[i] + \"\\\"\");");
+        bodyBuilder.appendFormalLine("if (element != -1) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("final int start = markup.indexOf('>', element) + 1;");
+        bodyBuilder.appendFormalLine("final int end = markup.indexOf('<', start);");
+        bodyBuilder.appendFormalLine("text = (end == -1 ? markup.substring(start) : markup.substring(start, end)).trim();");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("if (!expected[i].equals(text)) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("mismatches.append(\"\\n\").append(ids[i]).append(\": expected <\").append(expected[i]).append(\"> but was <\").append(text).append('>');");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("if (mismatches.length() > 0) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("Assert.fail(\"The show page does not display the saved values:\" + mismatches);");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        final List<JavaSymbolName> parameterNames = new ArrayList<JavaSymbolName>();
+        parameterNames.add(new JavaSymbolName("markup"));
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, VERIFY_SHOW_MARKUP, JavaType.VOID_PRIMITIVE,
+                AnnotatedJavaType.convertFromJavaTypes(JavaType.STRING), parameterNames, bodyBuilder);
+    }
+    
+    /**
+     * Escapes the value the way JSTL's <code>c:out</code> does.
+     */
+    private static String escapeMarkup(final String value) {
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                escaped.append("&amp;");
+                break;
+            case '<':
+                escaped.append("&lt;");
+                break;
+            case '>':
+                escaped.append("&gt;");
+                break;
+            case '\'':
+                escaped.append("&#039;");
+                break;
+            case '"':
+                escaped.append("&#034;");
+                break;
+            default:
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+    
+    private String getInitializer(final FieldMetadata field) {
+        return StringEscapeUtils.escapeJava(initializers.get(field.getFieldName()));
+    }
+    
+    /**
+     * Returns the expression of the text a field is entered and displayed as:
+     * the quoted test value, or the text of the field's value in the record.
+     * Dates are formatted in the field's <code>@DateTimeFormat</code> style
+     * like the test values are.
+     */
+    private String getValue(final FieldMetadata field, final boolean record) {
+        if (isBoolean(field)) {
+            // a checkbox is saved as checked or not, which the show page renders
+            return "String.valueOf(" + getBooleanValue(field, record) + ")";
+        }
+        if (!record) {
+            return "\"" + getInitializer(field) + "\"";
+        }
+        final JavaType fieldType = field.getFieldType();
+        final String getter = RECORD + "." + (fieldType.equals(JavaType.BOOLEAN_PRIMITIVE) ? "is" : "get")
+                + field.getFieldName().getSymbolNameCapitalisedFirstLetter() + "()";
+        if (!isDate(field)) {
+            return "String.valueOf(" + getter + ")";
+        }
+        return getDateFormat(field) + ".format(" + getter + (fieldType.equals(CALENDAR) ? ".getTime()" : "") + ")";
+    }
+    
+    /**
+     * Returns the expression of the state a Boolean field's checkbox is set
+     * to: the test value, or the field's value in the record, unchecked if
+     * that is <code>null</code>.
+     */
+    private String getBooleanValue(final FieldMetadata field, final boolean record) {
+        if (!record) {
+            return String.valueOf(Boolean.parseBoolean(initializers.get(field.getFieldName())));
+        }
+        if (field.getFieldType().equals(JavaType.BOOLEAN_PRIMITIVE)) {
+            return RECORD + ".is" + field.getFieldName().getSymbolNameCapitalisedFirstLetter() + "()";
+        }
+        return "Boolean.TRUE.equals(" + RECORD + ".get" + field.getFieldName().getSymbolNameCapitalisedFirstLetter() + "())";
+    }
+    
+    /**
+     * Returns the expression creating the date format of the field's
+     * <code>@DateTimeFormat</code> style, e.g. <code>M-</code>.
+     */
+    private String getDateFormat(final FieldMetadata field) {
+        String style = "S-";
+        final AnnotationMetadata dateTimeFormat = MemberFindingUtils.getAnnotationOfType(field.getAnnotations(), DATE_TIME_FORMAT);
+        if (dateTimeFormat != null && dateTimeFormat.getAttribute(STYLE) != null) {
+            style = dateTimeFormat.getAttribute(STYLE).getValue().toString();
+        }
+        if (style.startsWith("-")) {
+            return "DateFormat.getTimeInstance(" + getDateFormatStyle(style.charAt(1)) + ")";
+        }
+        if (style.endsWith("-")) {
+            return "DateFormat.getDateInstance(" + getDateFormatStyle(style.charAt(0)) + ")";
+        }
+        return "DateFormat.getDateTimeInstance(" + getDateFormatStyle(style.charAt(0)) + ", " + getDateFormatStyle(style.charAt(1)) + ")";
+    }
+    
+    private static String getDateFormatStyle(final char style) {
+        switch (style) {
+        case 'M':
+            return "DateFormat.MEDIUM";
+        case 'L':
+            return "DateFormat.LONG";
+        case 'F':
+            return "DateFormat.FULL";
+        default:
+            return "DateFormat.SHORT";
+        }
+    }
+    
+    /**
+     * Tells the test which profile of browser session to start or borrow, so
+     * the lean attribute can be changed without regenerating the test.
+     */
+    private MethodMetadataBuilder getIsLeanMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("return " + annotationValues.isLean() + ";");
+        return new MethodMetadataBuilder(getId(), Modifier.PRIVATE, IS_LEAN, JavaType.BOOLEAN_PRIMITIVE, bodyBuilder);
+    }
+    
+    private MethodMetadataBuilder getDriverMethod(final JavaSymbolName methodName, final InvocableMemberBodyBuilder bodyBuilder, final boolean record) {
+        final List<JavaSymbolName> parameterNames = new ArrayList<JavaSymbolName>();
+        parameterNames.add(new JavaSymbolName("driver"));
+        if (!record) {
+            return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, JavaType.VOID_PRIMITIVE,
+                    AnnotatedJavaType.convertFromJavaTypes(WEBDRIVER), parameterNames, bodyBuilder);
+        }
+        parameterNames.add(RECORD);
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, JavaType.VOID_PRIMITIVE,
+                AnnotatedJavaType.convertFromJavaTypes(WEBDRIVER, formBackingType), parameterNames, bodyBuilder);
+    }
+    
+    /**
+     * Adds the method to the ITD unless the test class declares it itself.
+     */
+    private void addMethod(final MethodMetadataBuilder methodBuilder) {
+        final MethodMetadata existing = MemberFindingUtils.getDeclaredMethod(governorTypeDetails,
+                methodBuilder.getMethodName(), AnnotatedJavaType.convertFromAnnotatedJavaTypes(methodBuilder.getParameterTypes()));
+        if (existing == null) {
+            builder.addMethod(methodBuilder);
+        }
     }
     
     // Typically, no changes are required beyond this point
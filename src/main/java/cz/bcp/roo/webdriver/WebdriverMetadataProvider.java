@@ -1,12 +1,23 @@
 package cz.bcp.roo.webdriver;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.addon.web.mvc.controller.details.WebMetadataService;
 import org.springframework.roo.classpath.PhysicalTypeIdentifier;
 import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.itd.AbstractItdMetadataProvider;
 import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.project.LogicalPath;
 
@@ -20,6 +31,12 @@ import org.springframework.roo.project.LogicalPath;
 @Component
 @Service
 public final class WebdriverMetadataProvider extends AbstractItdMetadataProvider {
+    
+    @Reference private WebMetadataService webMetadataService;
+    @Reference private WebdriverInitializerRegistry initializerRegistry;
+    @Reference private WebdriverStatistics statistics;
+    @Reference private WebdriverFieldCache fieldCache;
+    @Reference private WebdriverLocatorIndex locatorIndex;
 
     /**
      * The activate method for this OSGi component, this will be called by the OSGi container upon bundle activation 
@@ -28,8 +45,13 @@ public final class WebdriverMetadataProvider extends AbstractItdMetadataProvider
      * @param context the component context can be used to get access to the OSGi container (ie find out if certain bundles are active)
      */
     protected void activate(ComponentContext context) {
-        metadataDependencyRegistry.registerDependency(PhysicalTypeIdentifier.getMetadataIdentiferType(), getProvidesType());
-        addMetadataTrigger(new JavaType(RooWebdriver.class.getName()));
+        // New tests are passed on by WebdriverNotificationFilter instead of a dependency on every physical type
+        addMetadataTrigger(WebdriverAnnotationValues.ROO_WEBDRIVER);
+        // Every lookup is counted by the services themselves
+        metadataService = statistics.counting(MetadataService.class, metadataService, WebdriverStatistics.METADATA_SERVICE_CALLS);
+        typeLocationService = statistics.counting(TypeLocationService.class, typeLocationService, WebdriverStatistics.TYPE_LOCATION_SERVICE_CALLS);
+        memberDetailsScanner = statistics.counting(MemberDetailsScanner.class, memberDetailsScanner, WebdriverStatistics.MEMBER_DETAILS_SCANNER_CALLS);
+        webMetadataService = statistics.counting(WebMetadataService.class, webMetadataService, WebdriverStatistics.WEB_METADATA_SERVICE_CALLS);
     }
     
     /**
@@ -39,16 +61,51 @@ public final class WebdriverMetadataProvider extends AbstractItdMetadataProvider
      * @param context the component context can be used to get access to the OSGi container (ie find out if certain bundles are active)
      */
     protected void deactivate(ComponentContext context) {
-        metadataDependencyRegistry.deregisterDependency(PhysicalTypeIdentifier.getMetadataIdentiferType(), getProvidesType());
-        removeMetadataTrigger(new JavaType(RooWebdriver.class.getName()));    
+        removeMetadataTrigger(WebdriverAnnotationValues.ROO_WEBDRIVER);    
     }
     
     /**
      * Return an instance of the Metadata offered by this add-on
      */
     protected ItdTypeDetailsProvidingMetadataItem getMetadata(String metadataIdentificationString, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata, String itdFilename) {
+        final long start = System.nanoTime();
+        try {
+            return createMetadata(metadataIdentificationString, aspectName, governorPhysicalTypeMetadata);
+        }
+        finally {
+            statistics.record("getMetadata", start);
+        }
+    }
+    
+    private WebdriverMetadata createMetadata(String metadataIdentificationString, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata) {
+        final WebdriverAnnotationValues annotationValues = new WebdriverAnnotationValues(governorPhysicalTypeMetadata);
+        final JavaType controller = annotationValues.getController();
+        if (!annotationValues.isAnnotationFound() || controller == null) {
+            return null;
+        }
+        final ClassOrInterfaceTypeDetails controllerTypeDetails = typeLocationService.getTypeDetails(controller);
+        if (controllerTypeDetails == null) {
+            return null;
+        }
+        final WebdriverGenerationContext context = WebdriverGenerationContext.resolveIfAvailable(controllerTypeDetails,
+                getClass().getName(), metadataService, typeLocationService, memberDetailsScanner, webMetadataService, fieldCache);
+        if (context == null) {
+            return null;
+        }
+        
+        // Only this test's ITD is regenerated when the form backing object or the scaffold changes
+        metadataDependencyRegistry.registerDependency(context.getFormBackingTypeDetails().getDeclaredByMetadataId(), metadataIdentificationString);
+        metadataDependencyRegistry.registerDependency(context.getWebScaffoldMetadata().getId(), metadataIdentificationString);
+        
+        final Map<JavaSymbolName, String> initializers = new HashMap<JavaSymbolName, String>();
+        for (final FieldMetadata field : context.getFields()) {
+            initializers.put(field.getFieldName(), initializerRegistry.getInitializer(field));
+        }
+        
         // Pass dependencies required by the metadata in through its constructor
-        return new WebdriverMetadata(metadataIdentificationString, aspectName, governorPhysicalTypeMetadata);
+        return new WebdriverMetadata(metadataIdentificationString, aspectName, governorPhysicalTypeMetadata,
+                annotationValues, context.getFormBackingType(), context.getFields(), initializers,
+                locatorIndex.getViewIds(context.getPath().getModule(), context.getWebScaffoldMetadata().getAnnotationValues().getPath()));
     }
     
     /**
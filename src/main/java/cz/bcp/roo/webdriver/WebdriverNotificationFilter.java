@@ -0,0 +1,114 @@
+package cz.bcp.roo.webdriver;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataNotificationListener;
+import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+
+/**
+ * Receives the change of every physical type in the project on behalf of
+ * {@link WebdriverMetadataProvider} and {@link WebdriverPageMetadataProvider}
+ * and passes on only those of types carrying their trigger annotations. Types
+ * the add-on already produced metadata for, and the form backing objects and
+ * scaffolds that metadata depends on, notify the providers directly, so any
+ * other change is dropped after a single type lookup instead of reaching the
+ * ITD machinery. Every change also evicts the type from the
+ * {@link WebdriverFieldCache}.
+ *
+ * @since 1.1
+ */
+@Component
+@Service
+public class WebdriverNotificationFilter implements MetadataProvider, MetadataNotificationListener {
+
+    private static final String PROVIDES_TYPE = MetadataIdentificationUtils
+            .create(WebdriverNotificationFilter.class.getName());
+
+    @Reference private MetadataDependencyRegistry metadataDependencyRegistry;
+    @Reference private MetadataService metadataService;
+    @Reference private TypeLocationService typeLocationService;
+    @Reference private WebdriverStatistics statistics;
+    @Reference private WebdriverFieldCache fieldCache;
+
+    protected void activate(final ComponentContext context) {
+        // Every lookup is counted by the services themselves
+        metadataService = statistics.counting(MetadataService.class,
+                metadataService, WebdriverStatistics.METADATA_SERVICE_CALLS);
+        typeLocationService = statistics.counting(TypeLocationService.class,
+                typeLocationService,
+                WebdriverStatistics.TYPE_LOCATION_SERVICE_CALLS);
+        metadataDependencyRegistry.registerDependency(
+                PhysicalTypeIdentifier.getMetadataIdentiferType(),
+                getProvidesType());
+    }
+
+    protected void deactivate(final ComponentContext context) {
+        metadataDependencyRegistry.deregisterDependency(
+                PhysicalTypeIdentifier.getMetadataIdentiferType(),
+                getProvidesType());
+    }
+
+    public void notify(final String upstreamDependency,
+            final String downstreamDependency) {
+        statistics.count(WebdriverStatistics.NOTIFICATIONS_RECEIVED, 1);
+        if (!PhysicalTypeIdentifier.isValid(upstreamDependency)) {
+            return;
+        }
+        // Any type may be a form backing object analysed earlier or the type
+        // of one of its fields
+        fieldCache.evict(upstreamDependency);
+        final ClassOrInterfaceTypeDetails typeDetails = typeLocationService
+                .getTypeDetails(upstreamDependency);
+        if (typeDetails == null) {
+            // A deleted governor notifies its metadata directly
+            return;
+        }
+        final JavaType javaType = PhysicalTypeIdentifier
+                .getJavaType(upstreamDependency);
+        final LogicalPath path = PhysicalTypeIdentifier
+                .getPath(upstreamDependency);
+        final String metadataIdentificationString;
+        if (typeDetails.getAnnotation(WebdriverAnnotationValues.ROO_WEBDRIVER) != null) {
+            metadataIdentificationString = WebdriverMetadata.createIdentifier(
+                    javaType, path);
+        }
+        else if (typeDetails
+                .getAnnotation(WebdriverPageAnnotationValues.ROO_WEBDRIVER_PAGE) != null) {
+            metadataIdentificationString = WebdriverPageMetadata
+                    .createIdentifier(javaType, path);
+        }
+        else {
+            return;
+        }
+
+        // Known governors are notified directly through their own dependency
+        if (metadataDependencyRegistry.getDownstream(upstreamDependency)
+                .contains(metadataIdentificationString)) {
+            return;
+        }
+        statistics.count(WebdriverStatistics.NOTIFICATIONS_ACTED_UPON, 1);
+        metadataService.evictAndGet(metadataIdentificationString);
+    }
+
+    /**
+     * This filter produces no metadata of its own.
+     */
+    public MetadataItem get(final String metadataIdentificationString) {
+        return null;
+    }
+
+    public String getProvidesType() {
+        return PROVIDES_TYPE;
+    }
+}
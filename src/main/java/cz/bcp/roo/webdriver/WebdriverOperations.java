@@ -1,5 +1,7 @@
 package cz.bcp.roo.webdriver;
 
+import java.util.Collection;
+
 import org.springframework.roo.model.JavaType;
 
 /**
@@ -18,11 +20,70 @@ public interface WebdriverOperations {
 
     /**
      * Create WebDriver test for given entity
+     * 
+     * @param entity the scaffolded controller to test
+     * @param options the test generation options
+     */
+    void createTestClass(JavaType entity, WebdriverTestOptions options);    
+    
+    /**
+     * Create WebDriver tests for all scaffolded controllers in the project
+     * 
+     * @param options the test generation options
+     */
+    void createTestClasses(WebdriverTestOptions options);
+    
+    /**
+     * Create a load test running the create flow of the given scaffolded
+     * controller in concurrent sessions
+     * 
+     * @param controller the scaffolded controller to load
+     * @param mode whether the sessions post the form or use browsers
+     * @param sessions the default number of concurrent sessions
+     * @param duration the default duration of the test in seconds
+     * @param driverType the browser of browser sessions
+     */
+    void createLoadTest(JavaType controller, WebdriverLoadMode mode, int sessions, int duration, WebdriverDriverType driverType);
+    
+    /**
+     * Create a smoke test posting the create form of the given scaffolded
+     * controller over plain HTTP and checking the markup of the show page
+     * 
+     * @param controller the scaffolded controller to test
      */
-    void createTestClass(JavaType entity);    
+    void createSmokeTest(JavaType controller);
     
     /**
      * Setup all add-on artifacts (dependencies in this case)
+     * 
+     * @param driverType the browser whose driver artifacts should be added
+     */
+    void addDependencies(WebdriverDriverType driverType);
+    
+    /**
+     * Add the add-on artifacts to several modules in one batch, writing the
+     * POM of each module at most once
+     * 
+     * @param driverType the browser whose driver artifacts should be added
+     * @param moduleNames the modules to add the artifacts to; all web modules
+     *            if <code>null</code> or empty
+     */
+    void addDependencies(WebdriverDriverType driverType, Collection<String> moduleNames);
+    
+    /**
+     * Configure Surefire to run the tests of the focused module in parallel
+     * forks and threads
+     * 
+     * @param forks the number of forked JVMs
+     * @param threads the number of test classes run concurrently in each fork
+     */
+    void configureParallelExecution(int forks, int threads);
+    
+    /**
+     * Distribute the generated tests of the focused module over shards of
+     * about equal run time, based on the durations of the last build
+     * 
+     * @param shards the number of shards
      */
-    void addDependencies();
+    void shardTests(int shards);
 }
\ No newline at end of file
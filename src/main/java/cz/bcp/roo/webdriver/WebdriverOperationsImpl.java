@@ -1,26 +1,32 @@
 package cz.bcp.roo.webdriver;
 
-import static org.springframework.roo.model.JavaType.LONG_OBJECT;
-import static org.springframework.roo.model.JdkJavaType.BIG_DECIMAL;
-import static org.springframework.roo.model.Jsr303JavaType.FUTURE;
-import static org.springframework.roo.model.Jsr303JavaType.MIN;
-import static org.springframework.roo.model.Jsr303JavaType.PAST;
-import static org.springframework.roo.model.SpringJavaType.DATE_TIME_FORMAT;
+import static org.springframework.roo.model.JpaJavaType.MANY_TO_ONE;
+import static org.springframework.roo.model.JpaJavaType.ONE_TO_ONE;
+import static org.springframework.roo.model.RooJavaType.ROO_WEB_SCAFFOLD;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Modifier;
-import java.math.BigDecimal;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.framework.Bundle;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.addon.dod.DataOnDemandOperations;
 import org.springframework.roo.addon.web.mvc.controller.details.WebMetadataService;
 import org.springframework.roo.addon.web.mvc.controller.scaffold.WebScaffoldMetadata;
@@ -30,28 +36,34 @@ import org.springframework.roo.classpath.TypeLocationService;
 import org.springframework.roo.classpath.TypeManagementService;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.ConstructorMetadataBuilder;
 import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.FieldMetadataBuilder;
 import org.springframework.roo.classpath.details.ImportMetadata;
 import org.springframework.roo.classpath.details.ImportMetadataBuilder;
 import org.springframework.roo.classpath.details.MemberFindingUtils;
 import org.springframework.roo.classpath.details.MethodMetadataBuilder;
-import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
-import org.springframework.roo.classpath.details.annotations.AnnotationMetadata;
+import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
 import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
 import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
-import org.springframework.roo.classpath.operations.DateTime;
-import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.DataType;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
+import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.Dependency;
+import org.springframework.roo.project.DependencyScope;
+import org.springframework.roo.project.DependencyType;
 import org.springframework.roo.project.LogicalPath;
 import org.springframework.roo.project.Path;
+import org.springframework.roo.project.Plugin;
 import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.project.Property;
+import org.springframework.roo.project.maven.Pom;
 import org.springframework.roo.support.logging.HandlerUtils;
+import org.springframework.roo.support.util.FileUtils;
 import org.springframework.roo.support.util.XmlUtils;
 import org.w3c.dom.Element;
 
@@ -71,7 +83,13 @@ public class WebdriverOperationsImpl implements WebdriverOperations {
 	private static final JavaType TEST = new JavaType("org.junit.Test");
 	private static final JavaType BEFORE = new JavaType("org.junit.Before");
 	private static final JavaType AFTER = new JavaType("org.junit.After");
+	private static final JavaType ASSERT = new JavaType("org.junit.Assert");
 	private static final JavaType WEBDRIVER = new JavaType("org.openqa.selenium.WebDriver");
+	private static final String DRIVER_HOLDER = "DRIVER";
+	private static final String FORKS_PROPERTY = "webdriver.forks";
+	private static final String THREADS_PROPERTY = "webdriver.threads";
+	private static final String SHARD_PROPERTY = "webdriver.shard";
+	private static final String ALL_SHARDS = "all";
 	
 	/**
 	 * Use ProjectOperations to install new dependencies, plugins, properties,
@@ -90,10 +108,68 @@ public class WebdriverOperationsImpl implements WebdriverOperations {
 	 */
 	@Reference private TypeManagementService typeManagementService;
 	
+	/**
+	 * Use FileManager to write generated support sources
+	 */
+	@Reference private FileManager fileManager;
+	
 	@Reference private DataOnDemandOperations dataOnDemandOperations;
 	@Reference private MetadataService metadataService;
 	@Reference private MemberDetailsScanner memberDetailsScanner;
 	@Reference private WebMetadataService webMetadataService;
+	@Reference private WebdriverStatistics statistics;
+	@Reference private WebdriverFieldCache fieldCache;
+	@Reference private WebdriverLocatorIndex locatorIndex;
+	
+	// Artifacts of configuration.xml, read once on activation
+	private List<Dependency> batchDependencies;
+	private List<Dependency> embeddedDependencies;
+	private Map<String, List<Dependency>> driverDependencies;
+	private List<Plugin> parallelPlugins;
+
+	protected void activate(ComponentContext context) {
+		// Every lookup is counted by the services themselves
+		metadataService = statistics.counting(MetadataService.class, metadataService, WebdriverStatistics.METADATA_SERVICE_CALLS);
+		typeLocationService = statistics.counting(TypeLocationService.class, typeLocationService, WebdriverStatistics.TYPE_LOCATION_SERVICE_CALLS);
+		memberDetailsScanner = statistics.counting(MemberDetailsScanner.class, memberDetailsScanner, WebdriverStatistics.MEMBER_DETAILS_SCANNER_CALLS);
+		webMetadataService = statistics.counting(WebMetadataService.class, webMetadataService, WebdriverStatistics.WEB_METADATA_SERVICE_CALLS);
+
+		final Element configuration = XmlUtils.getConfiguration(getClass());
+		final List<Dependency> dependencies = new ArrayList<Dependency>(
+				getDependencies("/configuration/batch/dependencies/dependency", configuration));
+		dependencies.add(getAddOnDependency(context.getBundleContext().getBundle()));
+		batchDependencies = Collections.unmodifiableList(dependencies);
+		embeddedDependencies = getDependencies("/configuration/embedded/dependencies/dependency", configuration);
+		driverDependencies = new HashMap<String, List<Dependency>>();
+		for (final WebdriverDriverType driverType : WebdriverDriverType.values()) {
+			driverDependencies.put(driverType.getConfigurationName(), getDependencies(
+					"/configuration/drivers/driver[@name = '" + driverType.getConfigurationName() + "']/dependencies/dependency",
+					configuration));
+		}
+		parallelPlugins = new ArrayList<Plugin>();
+		for (final Element pluginElement : XmlUtils.findElements("/configuration/parallel/plugins/plugin", configuration)) {
+			parallelPlugins.add(new Plugin(pluginElement));
+		}
+	}
+
+	/**
+	 * Returns the dependency on the add-on's annotations in the version of the
+	 * add-on installed in the shell, so tests are never compiled against an
+	 * older or unreleased add-on. The bundle is named after the add-on's
+	 * artifact, whose group id is the same.
+	 */
+	private static Dependency getAddOnDependency(Bundle bundle) {
+		return new Dependency(bundle.getSymbolicName(), bundle.getSymbolicName(), bundle.getVersion().toString(),
+				DependencyType.JAR, DependencyScope.PROVIDED);
+	}
+
+	private static List<Dependency> getDependencies(String xPath, Element configuration) {
+		final List<Dependency> dependencies = new ArrayList<Dependency>();
+		for (final Element dependencyElement : XmlUtils.findElements(xPath, configuration)) {
+			dependencies.add(new Dependency(dependencyElement));
+		}
+		return Collections.unmodifiableList(dependencies);
+	}
 
 	/** {@inheritDoc} */
 	public boolean isCommandAvailable() {
@@ -102,102 +178,510 @@ public class WebdriverOperationsImpl implements WebdriverOperations {
 	}
 
 	/** {@inheritDoc} */
-	public void createTestClass(JavaType controller) {
+	public void createTestClass(JavaType controller, WebdriverTestOptions options) {
+		final long statisticsStart = System.nanoTime();
+		try {
+			Validate.notNull(controller, "Controller type required");
+			Validate.notNull(options, "Test options required");
+
+			final ClassOrInterfaceTypeDetails controllerTypeDetails = typeLocationService
+					.getTypeDetails(controller);
+			Validate.notNull(
+					controllerTypeDetails,
+					"Class or interface type details for type '%s' could not be resolved",
+					controller);
+
+			final Map<String, WebdriverFingerprints> fingerprints = new HashMap<String, WebdriverFingerprints>();
+			final Map<JavaType, ClassOrInterfaceTypeDetails> pageClasses = new HashMap<JavaType, ClassOrInterfaceTypeDetails>();
+			final Map<JavaType, JavaType> dataOnDemandTypes = new HashMap<JavaType, JavaType>();
+			final Map<JavaType, String> testFingerprints = new HashMap<JavaType, String>();
+			final ClassOrInterfaceTypeDetails testClass = buildTestClass(controllerTypeDetails, options, false, fingerprints, pageClasses, dataOnDemandTypes, testFingerprints);
+			if (testClass != null) {
+				final String moduleName = PhysicalTypeIdentifier.getPath(testClass.getDeclaredByMetadataId()).getModule();
+				installSupportSources(moduleName, options, getFingerprints(fingerprints, moduleName));
+				installDataOnDemands(dataOnDemandTypes);
+				writePageClasses(pageClasses);
+				typeManagementService.createOrUpdateTypeOnDisk(testClass);
+				recordTest(getFingerprints(fingerprints, moduleName), moduleName, testClass.getName(), testFingerprints.get(testClass.getName()));
+			}
+			for (final WebdriverFingerprints moduleFingerprints : fingerprints.values()) {
+				if (moduleFingerprints.getUnchangedCount() > 0) {
+					LOGGER.info("The WebDriver test for '" + controller.getFullyQualifiedTypeName() + "' is up to date");
+				}
+				moduleFingerprints.store();
+			}
+		}
+		finally {
+			statistics.record("createTestClass", statisticsStart);
+		}
+	}
+
+	/** {@inheritDoc} */
+	public void createTestClasses(WebdriverTestOptions options) {
+		final long statisticsStart = System.nanoTime();
+		try {
+			final long start = System.currentTimeMillis();
+			int skipped = 0;
+			int failed = 0;
+
+			// Find all scaffolded controllers in one pass and build their tests
+			final Map<String, WebdriverFingerprints> fingerprints = new HashMap<String, WebdriverFingerprints>();
+			final Map<JavaType, ClassOrInterfaceTypeDetails> pageClasses = new HashMap<JavaType, ClassOrInterfaceTypeDetails>();
+			final Map<JavaType, JavaType> dataOnDemandTypes = new HashMap<JavaType, JavaType>();
+			final Map<JavaType, String> testFingerprints = new HashMap<JavaType, String>();
+			final List<ClassOrInterfaceTypeDetails> testClasses = new ArrayList<ClassOrInterfaceTypeDetails>();
+			for (final ClassOrInterfaceTypeDetails controllerTypeDetails : typeLocationService
+					.findClassesOrInterfaceDetailsWithAnnotation(ROO_WEB_SCAFFOLD)) {
+				try {
+					final ClassOrInterfaceTypeDetails testClass = buildTestClass(controllerTypeDetails, options, true, fingerprints, pageClasses, dataOnDemandTypes, testFingerprints);
+					if (testClass == null) {
+						skipped++;
+					}
+					else {
+						testClasses.add(testClass);
+					}
+				}
+				catch (final RuntimeException e) {
+					failed++;
+					LOGGER.warning("Could not build WebDriver test for '"
+							+ controllerTypeDetails.getName().getFullyQualifiedTypeName()
+							+ "': " + e.getMessage());
+				}
+			}
 
+			// Write the whole batch to disk, fixtures and page objects first
+			installDataOnDemands(dataOnDemandTypes);
+			writePageClasses(pageClasses);
+			int created = 0;
+			final Set<String> moduleNames = new HashSet<String>();
+			for (final ClassOrInterfaceTypeDetails testClass : testClasses) {
+				try {
+					final String moduleName = PhysicalTypeIdentifier.getPath(testClass.getDeclaredByMetadataId()).getModule();
+					if (moduleNames.add(moduleName)) {
+						installSupportSources(moduleName, options, getFingerprints(fingerprints, moduleName));
+					}
+					typeManagementService.createOrUpdateTypeOnDisk(testClass);
+					recordTest(getFingerprints(fingerprints, moduleName), moduleName, testClass.getName(), testFingerprints.get(testClass.getName()));
+					created++;
+				}
+				catch (final RuntimeException e) {
+					failed++;
+					LOGGER.warning("Could not write WebDriver test '"
+							+ testClass.getName().getFullyQualifiedTypeName()
+							+ "': " + e.getMessage());
+				}
+			}
+
+			int unchanged = 0;
+			for (final WebdriverFingerprints moduleFingerprints : fingerprints.values()) {
+				unchanged += moduleFingerprints.getUnchangedCount();
+				moduleFingerprints.store();
+			}
+
+			LOGGER.info(String.format(
+					"WebDriver tests created: %d, unchanged: %d, skipped: %d, failed: %d (%d ms)",
+					created, unchanged, skipped - unchanged, failed, System.currentTimeMillis() - start));
+		}
+		finally {
+			statistics.record("createTestClasses", statisticsStart);
+		}
+	}
+
+	/** {@inheritDoc} */
+	public void createLoadTest(JavaType controller, WebdriverLoadMode mode, int sessions, int duration, WebdriverDriverType driverType) {
+		Validate.notNull(controller, "Controller type required");
+		Validate.notNull(mode, "Load mode required");
+		Validate.isTrue(sessions > 0, "At least one session is required");
+		Validate.isTrue(duration > 0, "Duration must be positive");
+		Validate.notNull(driverType, "Driver type required");
+
+		final ClassOrInterfaceTypeDetails controllerTypeDetails = typeLocationService.getTypeDetails(controller);
+		Validate.notNull(controllerTypeDetails, "Class or interface type details for type '%s' could not be resolved", controller);
+		final WebdriverGenerationContext context = WebdriverGenerationContext
+				.resolve(controllerTypeDetails, getClass().getName(),
+						metadataService, typeLocationService,
+						memberDetailsScanner, webMetadataService, fieldCache);
+		if (!context.getWebScaffoldMetadata().getAnnotationValues().isCreate()) {
+			LOGGER.warning("The controller '" + controller.getFullyQualifiedTypeName() + "' does not allow the creation of new instances of the form backing object. No load test created.");
+			return;
+		}
+		final String moduleName = context.getPath().getModule();
+		final JavaType name = new JavaType(controller + "LoadTest");
+		if (metadataService.get(PhysicalTypeIdentifier.createIdentifier(name, Path.SRC_TEST_JAVA.getModulePathId(moduleName))) != null) {
+			LOGGER.log(Level.SEVERE, "The file '" + name.getFullyQualifiedTypeName() + "' already exists");
+			return;
+		}
+
+		// The load test shares the fixtures of the functional tests
+		final Map<String, WebdriverFingerprints> fingerprints = new HashMap<String, WebdriverFingerprints>();
+		final WebdriverFingerprints moduleFingerprints = getFingerprints(fingerprints, moduleName);
+		installApplication(moduleName, moduleFingerprints);
+		final JavaType histogramType = getHistogramType(moduleName);
+		writeTestSource(moduleName, histogramType, getTemplate("WebdriverLatencyHistogram.java-template").replace(
+				"__TOP_LEVEL_PACKAGE__", histogramType.getPackage().getFullyQualifiedPackageName()), moduleFingerprints);
+
+		final List<JavaType> imports = new ArrayList<JavaType>();
+		imports.add(getApplicationType(moduleName));
+		imports.add(histogramType);
+		String contents;
+		if (mode == WebdriverLoadMode.BROWSER) {
+			final JavaType poolType = getDriverPoolType(moduleName, driverType);
+			installLeanProfile(moduleName, driverType, null, moduleFingerprints);
+			installDriverPool(moduleName, driverType, moduleFingerprints);
+			imports.add(poolType);
+			final JavaType pageType = getPageType(context);
+			final ClassOrInterfaceTypeDetails pageClass = buildPageClass(context, pageType);
+			if (pageClass != null) {
+				typeManagementService.createOrUpdateTypeOnDisk(pageClass);
+			}
+			contents = getTemplate("WebdriverBrowserLoadTest.java-template");
+			contents = contents.replace("__POOL__", poolType.getSimpleTypeName());
+			contents = contents.replace("__PAGE__", pageType.getSimpleTypeName());
+		}
+		else {
+			contents = getTemplate("WebdriverHttpLoadTest.java-template");
+			contents = contents.replace("__PATH__", context.getWebScaffoldMetadata().getAnnotationValues().getPath());
+		}
+		contents = contents.replace("__PACKAGE__", name.getPackage().getFullyQualifiedPackageName());
+		contents = contents.replace("__IMPORTS__", getImportStatements(name, imports));
+		contents = contents.replace("__CLASS__", name.getSimpleTypeName());
+		contents = contents.replace("__CONTROLLER__", controller.getSimpleTypeName());
+		contents = contents.replace("__SESSIONS__", String.valueOf(sessions));
+		contents = contents.replace("__DURATION__", String.valueOf(duration));
+		writeTestSource(moduleName, name, contents, moduleFingerprints);
+		moduleFingerprints.store();
+	}
+
+	/** {@inheritDoc} */
+	public void createSmokeTest(JavaType controller) {
 		Validate.notNull(controller, "Controller type required");
 
-        final ClassOrInterfaceTypeDetails controllerTypeDetails = typeLocationService
-                .getTypeDetails(controller);
-        Validate.notNull(
-                controllerTypeDetails,
-                "Class or interface type details for type '%s' could not be resolved",
-                controller);
-
-        final LogicalPath path = PhysicalTypeIdentifier
-                .getPath(controllerTypeDetails.getDeclaredByMetadataId());
-        final String webScaffoldMetadataIdentifier = WebScaffoldMetadata
-                .createIdentifier(controller, path);
-        final WebScaffoldMetadata webScaffoldMetadata = (WebScaffoldMetadata) metadataService
-                .get(webScaffoldMetadataIdentifier);
-        Validate.notNull(
-                webScaffoldMetadata,
-                "Web controller '%s' does not appear to be an automatic, scaffolded controller",
-                controller.getFullyQualifiedTypeName());
+		final ClassOrInterfaceTypeDetails controllerTypeDetails = typeLocationService.getTypeDetails(controller);
+		Validate.notNull(controllerTypeDetails, "Class or interface type details for type '%s' could not be resolved", controller);
+		final WebdriverGenerationContext context = WebdriverGenerationContext
+				.resolve(controllerTypeDetails, getClass().getName(),
+						metadataService, typeLocationService,
+						memberDetailsScanner, webMetadataService, fieldCache);
+		if (!context.getWebScaffoldMetadata().getAnnotationValues().isCreate()) {
+			LOGGER.warning("The controller '" + controller.getFullyQualifiedTypeName() + "' does not allow the creation of new instances of the form backing object. No smoke test created.");
+			return;
+		}
+		final String moduleName = context.getPath().getModule();
+		final JavaType name = new JavaType(controller + "SmokeTest");
+		if (metadataService.get(PhysicalTypeIdentifier.createIdentifier(name, Path.SRC_TEST_JAVA.getModulePathId(moduleName))) != null) {
+			LOGGER.log(Level.SEVERE, "The file '" + name.getFullyQualifiedTypeName() + "' already exists");
+			return;
+		}
+
+		// Only the application fixture is needed; the form and the expected
+		// markup are introduced by the test's ITD
+		final Map<String, WebdriverFingerprints> fingerprints = new HashMap<String, WebdriverFingerprints>();
+		final WebdriverFingerprints moduleFingerprints = getFingerprints(fingerprints, moduleName);
+		installApplication(moduleName, moduleFingerprints);
+
+		String contents = getTemplate("WebdriverHttpSmokeTest.java-template");
+		contents = contents.replace("__PACKAGE__", name.getPackage().getFullyQualifiedPackageName());
+		contents = contents.replace("__IMPORTS__", getImportStatements(name, Arrays.asList(getApplicationType(moduleName))));
+		contents = contents.replace("__CLASS__", name.getSimpleTypeName());
+		contents = contents.replace("__CONTROLLER__", controller.getSimpleTypeName());
+		contents = contents.replace("__PATH__", context.getWebScaffoldMetadata().getAnnotationValues().getPath());
+		writeTestSource(moduleName, name, contents, moduleFingerprints);
+		moduleFingerprints.store();
+	}
+
+	/**
+	 * Builds the WebDriver test class for the given scaffolded controller
+	 * without writing it to disk.
+	 * 
+	 * @param controllerTypeDetails the controller to build the test for
+	 * @param options the test generation options
+	 * @param bulk whether the test is built for every scaffolded controller,
+	 *        in which case an existing test is an expected skip, not an error
+	 * @param fingerprints the fingerprint stores loaded so far, by module name
+	 * @param pageClasses collects the page objects the test needs, by name;
+	 *        <code>null</code> for one that exists already
+	 * @param dataOnDemandTypes collects the form backing objects of the
+	 *        DataOnDemands the test needs, by DataOnDemand type
+	 * @param testFingerprints collects the fingerprint of the test by its
+	 *        name, to be recorded once the test has been written
+	 * @return the test class, or <code>null</code> if the controller should be
+	 *         skipped or its test is up to date
+	 */
+	private ClassOrInterfaceTypeDetails buildTestClass(
+			final ClassOrInterfaceTypeDetails controllerTypeDetails,
+			final WebdriverTestOptions options,
+			final boolean bulk,
+			final Map<String, WebdriverFingerprints> fingerprints,
+			final Map<JavaType, ClassOrInterfaceTypeDetails> pageClasses,
+			final Map<JavaType, JavaType> dataOnDemandTypes,
+			final Map<JavaType, String> testFingerprints) {
+		final WebdriverGenerationContext context = WebdriverGenerationContext
+				.resolve(controllerTypeDetails, getClass().getName(),
+						metadataService, typeLocationService,
+						memberDetailsScanner, webMetadataService, fieldCache);
+		LOGGER.fine("Resolved " + context + " in " + context.getLookupCount() + " lookups");
+		final JavaType controller = context.getController();
+		final LogicalPath path = context.getPath();
+		final WebScaffoldMetadata webScaffoldMetadata = context.getWebScaffoldMetadata();
 
         // abort the creation of a selenium test if the controller does not
         // allow the creation of new instances for the form backing object
         if (!webScaffoldMetadata.getAnnotationValues().isCreate()) {
-            LOGGER.warning("The controller you specified does not allow the creation of new instances of the form backing object. No Selenium tests created.");
-            return;
+            LOGGER.warning("The controller '" + controller.getFullyQualifiedTypeName() + "' does not allow the creation of new instances of the form backing object. No Selenium tests created.");
+            return null;
         }
         
+		// Report customized views now rather than as timeouts of the test
+		final WebdriverViewIds viewIds = locatorIndex.getViewIds(path.getModule(), webScaffoldMetadata.getAnnotationValues().getPath());
+		for (final String mismatch : viewIds.getMismatches(context.getFormBackingType(), context.getFields())) {
+			LOGGER.warning("Views of '" + controller.getFullyQualifiedTypeName() + "': " + mismatch);
+		}
+        
 		final JavaType name = new JavaType(controller + "SeleniumTest");
 		final String declaredByMetadataId = PhysicalTypeIdentifier
 				.createIdentifier(name,
 						Path.SRC_TEST_JAVA.getModulePathId(path.getModule()));
 
+		// A test generated from other inputs is regenerated, but one the
+		// add-on has no record of is left alone
+		final WebdriverFingerprints moduleFingerprints = getFingerprints(fingerprints, path.getModule());
+		final String fingerprint = getFingerprint(context, options);
 		if (metadataService.get(declaredByMetadataId) != null) {
-			LOGGER.log(Level.SEVERE, "The file already exists");
-			return;
+			if (moduleFingerprints.isUnchanged(name.getFullyQualifiedTypeName(), fingerprint)) {
+				return null;
+			}
+			if (!moduleFingerprints.contains(name.getFullyQualifiedTypeName())) {
+				LOGGER.log(bulk ? Level.INFO : Level.SEVERE, "The file '" + name.getFullyQualifiedTypeName() + "' already exists");
+				return null;
+			}
+			// Regenerating would overwrite the changes made to the test by hand
+			if (moduleFingerprints.isEdited(name.getFullyQualifiedTypeName(), readTestSource(getTestSourceIdentifier(path.getModule(), name)))) {
+				LOGGER.warning("The file '" + name.getFullyQualifiedTypeName() + "' has been edited since it was generated; delete it to have it generated again");
+				return null;
+			}
 		}		
+		testFingerprints.put(name, fingerprint);
 		
-		// Create imports		
-		String firefoxDriver = "org.openqa.selenium.firefox.FirefoxDriver";
-		ImportMetadataBuilder firefoxImportBuilder = new ImportMetadataBuilder(declaredByMetadataId, 0, new JavaPackage(firefoxDriver), new JavaType(firefoxDriver), false, false);				
-		String timeUnit = "java.util.concurrent.TimeUnit";
-		ImportMetadataBuilder timeUnitImportBuilder = new ImportMetadataBuilder(declaredByMetadataId, 0, new JavaPackage(timeUnit), new JavaType(timeUnit), false, false);		
-		String assertPackage = "org.junit.Assert";
-		ImportMetadataBuilder assertImportBuilder = new ImportMetadataBuilder(declaredByMetadataId, 0, new JavaPackage(assertPackage), new JavaType(assertPackage), false, false);
-		String byPackage = "org.openqa.selenium.By";
-		ImportMetadataBuilder byImportBuilder = new ImportMetadataBuilder(declaredByMetadataId, 0, new JavaPackage(byPackage), new JavaType(byPackage), false, false);
-		String webElementPackage = "org.openqa.selenium.WebElement";
-		ImportMetadataBuilder webElementImportBuilder = new ImportMetadataBuilder(declaredByMetadataId, 0, new JavaPackage(webElementPackage), new JavaType(webElementPackage), false, false);
+		// The page object is shared by all tests of the form backing object
+		final JavaType pageType = getPageType(context);
+		if (!pageClasses.containsKey(pageType)) {
+			pageClasses.put(pageType, buildPageClass(context, pageType));
+		}
 		
+		// Create imports		
 		final List<ImportMetadata> imports = new ArrayList<ImportMetadata>();
-		imports.add(firefoxImportBuilder.build());
-		imports.add(timeUnitImportBuilder.build());
-		imports.add(assertImportBuilder.build());
-		imports.add(byImportBuilder.build());
-		imports.add(webElementImportBuilder.build());
+		imports.add(getImport(declaredByMetadataId, getApplicationType(path.getModule()).getFullyQualifiedTypeName()));
+		if (options.isTimed()) {
+			imports.add(getImport(declaredByMetadataId, getTimingsType(path.getModule()).getFullyQualifiedTypeName()));
+		}
+		if (options.isPooled()) {
+			imports.add(getImport(declaredByMetadataId, getDriverPoolType(path.getModule(), options.getDriverType()).getFullyQualifiedTypeName()));
+		}
+		else {
+			imports.add(getImport(declaredByMetadataId, getLeanProfileType(path.getModule(), options.getDriverType()).getFullyQualifiedTypeName()));
+			for (final String driverImport : options.getDriverType().getImports()) {
+				imports.add(getImport(declaredByMetadataId, driverImport));
+			}
+		}
+		if (options.isJourney()) {
+			imports.add(getImport(declaredByMetadataId, ASSERT.getFullyQualifiedTypeName()));
+		}
+		// records are taken from the DataOnDemand, and so is a journey's update
+		if (options.getRecords() > 1 || options.isJourney() && webScaffoldMetadata.getAnnotationValues().isUpdate()) {
+			final FieldMetadata reference = getReferenceField(context);
+			Validate.isTrue(reference == null,
+					"'%s' references another entity through '%s'; --records and --journey need an entity without @ManyToOne or @OneToOne fields",
+					context.getFormBackingType().getFullyQualifiedTypeName(), reference == null ? null : reference.getFieldName());
+			imports.add(getImport(declaredByMetadataId, context.getFormBackingType().getFullyQualifiedTypeName()));
+			imports.add(getImport(declaredByMetadataId, getDataOnDemandType(context, dataOnDemandTypes).getFullyQualifiedTypeName()));
+		}
 				
 		// Create fields
 		final List<FieldMetadataBuilder> fields = new ArrayList<FieldMetadataBuilder>();
-		fields.add(getDriverField(declaredByMetadataId));
+		if (options.isThreadSafe()) {
+			imports.add(getImport(declaredByMetadataId, WEBDRIVER.getFullyQualifiedTypeName()));
+			fields.add(getDriverHolderField(declaredByMetadataId));
+		}
+		else {
+			fields.add(getDriverField(declaredByMetadataId));
+		}
 
 		// Create methods
 		final List<MethodMetadataBuilder> methods = new ArrayList<MethodMetadataBuilder>();
-		methods.add(getBeforeMethod(declaredByMetadataId, controller));
-		methods.add(getTestMethod(declaredByMetadataId, controller));
-		methods.add(getAfterMethod(declaredByMetadataId, controller));
+		methods.add(getBeforeMethod(declaredByMetadataId, context, options));
+		methods.add(getTestMethod(declaredByMetadataId, context, options));
+		methods.add(getAfterMethod(declaredByMetadataId, context, options));
+		if (!options.isPooled()) {
+			methods.add(getCreateDriverMethod(declaredByMetadataId, context, options));
+		}
+		if (options.isTimed()) {
+			methods.add(getRecordTimingMethod(declaredByMetadataId, context));
+		}
 
 		// Create class
 		final ClassOrInterfaceTypeDetailsBuilder cidBuilder = new ClassOrInterfaceTypeDetailsBuilder(
 				declaredByMetadataId, Modifier.PUBLIC, name,
 				PhysicalTypeCategory.CLASS);		
 		cidBuilder.add(imports);
+		cidBuilder.addAnnotation(getWebdriverAnnotation(controller, options));
 		cidBuilder.setDeclaredMethods(methods);
 		cidBuilder.setDeclaredFields(fields);
 		
-		typeManagementService.createOrUpdateTypeOnDisk(cidBuilder.build());
+		return cidBuilder.build();
 	}
 
 	/** {@inheritDoc} */
-	public void addDependencies() {
-		List<Dependency> dependencies = new ArrayList<Dependency>();
+	public void addDependencies(WebdriverDriverType driverType) {
+		final long statisticsStart = System.nanoTime();
+		try {
+			Validate.notNull(driverType, "Driver type required");
+			addDependencies(projectOperations.getFocusedModuleName(), getDependencies(driverType));
+		}
+		finally {
+			statistics.record("addDependencies", statisticsStart);
+		}
+	}
 
-		// Install dependencies defined in external XML file
-		for (Element dependencyElement : XmlUtils.findElements(
-				"/configuration/batch/dependencies/dependency",
-				XmlUtils.getConfiguration(getClass()))) {
-			dependencies.add(new Dependency(dependencyElement));
+	/** {@inheritDoc} */
+	public void addDependencies(WebdriverDriverType driverType, Collection<String> moduleNames) {
+		final long statisticsStart = System.nanoTime();
+		try {
+			Validate.notNull(driverType, "Driver type required");
+			final Collection<String> targetModules = moduleNames == null || moduleNames.isEmpty() ? getWebModuleNames() : moduleNames;
+			final List<Dependency> dependencies = getDependencies(driverType);
+			int updated = 0;
+			for (final String moduleName : targetModules) {
+				Validate.notNull(projectOperations.getPomFromModuleName(moduleName), "Module '%s' does not exist", moduleName);
+				if (addDependencies(moduleName, dependencies)) {
+					updated++;
+				}
+			}
+			LOGGER.info(String.format("WebDriver dependencies added to %d modules, %d already up to date",
+					updated, targetModules.size() - updated));
 		}
+		finally {
+			statistics.record("addDependencies", statisticsStart);
+		}
+	}
+
+	/**
+	 * Returns the artifacts of the add-on and of the given browser's driver.
+	 */
+	private List<Dependency> getDependencies(WebdriverDriverType driverType) {
+		final List<Dependency> dependencies = new ArrayList<Dependency>(batchDependencies);
+		dependencies.addAll(driverDependencies.get(driverType.getConfigurationName()));
+		return dependencies;
+	}
 
-		// Add all new dependencies to pom.xml
-		projectOperations.addDependencies("", dependencies);
+	/**
+	 * Adds the dependencies to the POM of the given module in a single write,
+	 * or not at all if they are all present already.
+	 * 
+	 * @return whether the POM was written
+	 */
+	private boolean addDependencies(String moduleName, List<Dependency> dependencies) {
+		final Pom pom = projectOperations.getPomFromModuleName(moduleName);
+		if (pom != null && pom.isAllDependenciesRegistered(dependencies)) {
+			return false;
+		}
+		projectOperations.addDependencies(moduleName, dependencies);
+		return true;
+	}
+
+	/**
+	 * Returns the modules packaged as web applications.
+	 */
+	private List<String> getWebModuleNames() {
+		final List<String> moduleNames = new ArrayList<String>();
+		for (final String moduleName : projectOperations.getModuleNames()) {
+			final Pom pom = projectOperations.getPomFromModuleName(moduleName);
+			if (pom != null && "war".equals(pom.getPackaging())) {
+				moduleNames.add(moduleName);
+			}
+		}
+		return moduleNames;
 	}
 	
-	private MethodMetadataBuilder getBeforeMethod(String declaredByMetadataId, JavaType controller) {
+	/** {@inheritDoc} */
+	public void configureParallelExecution(int forks, int threads) {
+		Validate.isTrue(forks > 0, "At least one fork is required");
+		Validate.isTrue(threads > 0, "At least one thread is required");
+		final String moduleName = projectOperations.getFocusedModuleName();
+
+		projectOperations.addProperty(moduleName, new Property(FORKS_PROPERTY, String.valueOf(forks)));
+		projectOperations.addProperty(moduleName, new Property(THREADS_PROPERTY, String.valueOf(threads)));
+		projectOperations.addProperty(moduleName, new Property(SHARD_PROPERTY, ALL_SHARDS));
+
+		// Surefire settings are defined in external XML file
+		for (final Plugin plugin : parallelPlugins) {
+			projectOperations.updateBuildPlugin(moduleName, plugin);
+		}
+
+		// The default shard keeps Surefire's default includes
+		writeShard(moduleName, ALL_SHARDS, Arrays.asList("**/Test*.java", "**/*Test.java", "**/*TestCase.java"));
+	}
+
+	/** {@inheritDoc} */
+	public void shardTests(int shards) {
+		Validate.isTrue(shards > 0, "At least one shard is required");
+		final String moduleName = projectOperations.getFocusedModuleName();
+
+		// Generated tests of the module
+		final List<String> testClasses = new ArrayList<String>();
+		for (final ClassOrInterfaceTypeDetails controllerTypeDetails : typeLocationService
+				.findClassesOrInterfaceDetailsWithAnnotation(ROO_WEB_SCAFFOLD)) {
+			final LogicalPath path = PhysicalTypeIdentifier.getPath(controllerTypeDetails.getDeclaredByMetadataId());
+			if (!path.getModule().equals(moduleName)) {
+				continue;
+			}
+			final JavaType testClass = new JavaType(controllerTypeDetails.getName() + "SeleniumTest");
+			if (metadataService.get(PhysicalTypeIdentifier.createIdentifier(testClass,
+					Path.SRC_TEST_JAVA.getModulePathId(moduleName))) != null) {
+				testClasses.add(testClass.getFullyQualifiedTypeName());
+			}
+		}
+
+		final Map<String, Double> durations = WebdriverShardPlanner.readDurations(new File(projectOperations.getPathResolver().getIdentifier(
+				LogicalPath.getInstance(Path.ROOT, moduleName), "target/surefire-reports")));
+		final List<List<String>> plan = WebdriverShardPlanner.plan(testClasses, durations, shards);
+		for (int i = 0; i < plan.size(); i++) {
+			final List<String> includes = new ArrayList<String>();
+			for (final String testClass : plan.get(i)) {
+				includes.add(testClass.replace('.', '/') + ".java");
+			}
+			writeShard(moduleName, String.valueOf(i + 1), includes);
+		}
+		LOGGER.info(String.format(
+				"Distributed %d WebDriver tests over %d shards (%d with recorded durations); run a shard with -D%s=<n>",
+				testClasses.size(), shards, durations.size(), SHARD_PROPERTY));
+	}
+
+	private void writeShard(String moduleName, String shard, List<String> includes) {
+		final String identifier = projectOperations.getPathResolver().getIdentifier(
+				LogicalPath.getInstance(Path.SRC_TEST_RESOURCES, moduleName),
+				"webdriver-shards/shard-" + shard + ".txt");
+		final StringBuilder contents = new StringBuilder();
+		for (final String include : includes) {
+			contents.append(include).append("\n");
+		}
+		fileManager.createOrUpdateTextFileIfRequired(identifier, contents.toString(), false);
+	}
+	
+	private MethodMetadataBuilder getBeforeMethod(String declaredByMetadataId, WebdriverGenerationContext context, WebdriverTestOptions options) {
 		final InvocableMemberBodyBuilder bodyBuilderBefore = new InvocableMemberBodyBuilder();		
+		final String newDriver;
+		if (options.isPooled()) {
+			newDriver = getDriverPoolType(context.getPath().getModule(), options.getDriverType()).getSimpleTypeName() + ".getShared().borrow(isLean())";
+		}
+		else {
+			newDriver = "createDriver()";
+		}
+		if (options.isThreadSafe()) {
+			bodyBuilderBefore.appendFormalLine(DRIVER_HOLDER + ".set(" + newDriver + ");");
+		}
+		else {
+			bodyBuilderBefore.appendFormalLine("driver = " + newDriver + ";");
+		}
 		final List<AnnotationMetadataBuilder> methodAnnotationsBefore = new ArrayList<AnnotationMetadataBuilder>();
 		methodAnnotationsBefore.add(new AnnotationMetadataBuilder(BEFORE));
 		final MethodMetadataBuilder methodBuilderBefore = new MethodMetadataBuilder(
@@ -207,110 +691,143 @@ public class WebdriverOperationsImpl implements WebdriverOperations {
 		return methodBuilderBefore;
 	}	
 	
-	private MethodMetadataBuilder getTestMethod(String declaredByMetadataId, JavaType controller) {
-		final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
-		final ClassOrInterfaceTypeDetails controllerDetails = typeLocationService.getTypeDetails(controller);
-		
-		final ClassOrInterfaceTypeDetails controllerTypeDetails = typeLocationService
-	                .getTypeDetails(controller);
-		final LogicalPath path = PhysicalTypeIdentifier
-                .getPath(controllerTypeDetails.getDeclaredByMetadataId());
-        final String webScaffoldMetadataIdentifier = WebScaffoldMetadata
-                .createIdentifier(controller, path);
-		final WebScaffoldMetadata webScaffoldMetadata = (WebScaffoldMetadata) metadataService
-                .get(webScaffoldMetadataIdentifier);
-		final JavaType formBackingType = webScaffoldMetadata.getAnnotationValues().getFormBackingObject();
-		
-		 final ClassOrInterfaceTypeDetails formBackingTypeDetails = typeLocationService
-	                .getTypeDetails(formBackingType);
-	        Validate.notNull(
-	                formBackingType,
-	                "Class or interface type details for type '%s' could not be resolved",
-	                formBackingType);
-		final MemberDetails memberDetails = memberDetailsScanner
-                .getMemberDetails(getClass().getName(), formBackingTypeDetails);
-	
-		final List<FieldMetadata> fields = webMetadataService
-                .getScaffoldEligibleFieldMetadata(formBackingType,
-                        memberDetails, null);
-
-		String indexPageUrl = projectOperations.getProjectName(
-								projectOperations.getFocusedModuleName()) 
-								+ "/"
-								+ webScaffoldMetadata.getAnnotationValues().getPath()
-								+ "?form";
-		if (controllerDetails != null) {		
-				bodyBuilder.appendFormalLine("// open index page");
-				bodyBuilder.appendFormalLine("driver.navigate().to(\"http://localhost:8080/" + indexPageUrl + "\");");
+	// package-private for the generation benchmarks
+	MethodMetadataBuilder getTestMethod(String declaredByMetadataId, WebdriverGenerationContext context, WebdriverTestOptions options) {
+		final long statisticsStart = System.nanoTime();
+		try {
+			final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+			if (options.isThreadSafe()) {
+				bodyBuilder.appendFormalLine("final WebDriver driver = " + DRIVER_HOLDER + ".get();");
+			}
+
+			final String pageType = getPageType(context).getSimpleTypeName();
+			bodyBuilder.appendFormalLine("// open create form of the application started for this JVM");
+			bodyBuilder.appendFormalLine("final " + pageType + " page = new " + pageType + "(driver);");
+			if (options.isTimed()) {
+				bodyBuilder.appendFormalLine("long start = System.nanoTime();");
+			}
+			final String baseUrl = getApplicationType(context.getPath().getModule()).getSimpleTypeName() + ".getBaseUrl()";
+			final String openCreateForm = "page.openCreateForm(" + baseUrl + ");";
+			if (options.getRecords() > 1) {
+				// every record is submitted in the same browser session
+				final String formBackingType = context.getFormBackingType().getSimpleTypeName();
+				final String dodType = getDataOnDemandType(context).getSimpleTypeName();
+				bodyBuilder.appendFormalLine("final " + dodType + " dod = new " + dodType + "();");
+				bodyBuilder.appendFormalLine("for (int i = 0; i < " + options.getRecords() + "; i++) {");
+				bodyBuilder.indent();
+				bodyBuilder.appendFormalLine("final " + formBackingType + " record = dod.getNewTransient" + formBackingType + "(i);");
+				appendStep(bodyBuilder, openCreateForm, "navigate", options);
+				appendStep(bodyBuilder, "fillForm(driver, record);", "fill", options);
+				appendStep(bodyBuilder, "page.submit();", "submit", options);
+				appendStep(bodyBuilder, "verifyShowPage(driver, record);", "verify", options);
+				if (options.isJourney()) {
+					// updates switch the record to the DataOnDemand's next unused one
+					appendJourney(bodyBuilder, context, options, baseUrl,
+							"final " + formBackingType + " updated = dod.getNewTransient" + formBackingType + "(" + options.getRecords() + " + i);",
+							"fillForm(driver, updated);", "verifyShowPage(driver, updated);");
+				}
+				bodyBuilder.indentRemove();
+				bodyBuilder.appendFormalLine("}");
+			}
+			else {
+				appendStep(bodyBuilder, openCreateForm, "navigate", options);
 				bodyBuilder.append("\n");
-				
-				for (final FieldMetadata field : fields) {
-		            final JavaType fieldType = field.getFieldType();
-		            if (!fieldType.isCommonCollectionType()
-		                    && !isSpecialType(fieldType)) {
-		            	String fieldId = "_" + field.getFieldName().getSymbolName() + "_id";
-		            	String testValue = convertToInitializer(field);
-		            	String tesTextVariableName = field.getFieldName() + "String";
-		            	bodyBuilder.appendFormalLine("// type " + fieldId + " " + testValue);
-		            	bodyBuilder.appendFormalLine("WebElement "+ field.getFieldName() + "TextBox = driver.findElement(By.id(\"" + fieldId + "\"));");		
-		            	bodyBuilder.appendFormalLine("String " + tesTextVariableName + " = \"" + testValue + "\";");
-		            	bodyBuilder.appendFormalLine(field.getFieldName() + "TextBox.sendKeys(" + tesTextVariableName + ");");
-		            	bodyBuilder.append("\n");
-		            }
-		        }
-				
-				bodyBuilder.appendFormalLine("// save new record and wait");
-				bodyBuilder.appendFormalLine("driver.findElement(By.id(\"proceed\")).click();");	
-				bodyBuilder.appendFormalLine("long end = System.currentTimeMillis() + 5000;");
-				bodyBuilder.append("\n");	
-				
-				bodyBuilder.appendFormalLine("// verify text");				
-            	bodyBuilder.appendFormalLine("while (System.currentTimeMillis() < end) {");
-				for (int i = 0; i < fields.size(); i++) {
-					FieldMetadata field = fields.get(i);				
-		            final JavaType fieldType = field.getFieldType();
-		            if (!fieldType.isCommonCollectionType()
-		                    && !isSpecialType(fieldType)) {
-		            	
-		            	String tesTextVariableName = field.getFieldName() + "String";
-		            	String resultDivId = "_s_"
-		            						+ formBackingType.getFullyQualifiedTypeName() + "_"
-		            						+ field.getFieldName().getSymbolName() + "_"
-		            						+ field.getFieldName().getSymbolName() + "_id";
-		            	resultDivId = resultDivId.replace('.', '_');		            	
-		            	bodyBuilder.appendFormalLine("WebElement " + field.getFieldName() + "ResultsDiv = driver.findElement(By.id(\"" + resultDivId + "\"));");
-		            	bodyBuilder.appendFormalLine("if (" + field.getFieldName() + "ResultsDiv.isDisplayed()) {");
-		            	bodyBuilder.appendFormalLine("String text = " + field.getFieldName() + "ResultsDiv.getText();");
-		            	bodyBuilder.appendFormalLine("Assert.assertEquals(" + tesTextVariableName + ", text);");
-		            	if (i == fields.size()-1) {
-		            		bodyBuilder.appendFormalLine("break;"); // za posledni iteraci
-		            		bodyBuilder.appendFormalLine("}");
-		            	}
-		            	bodyBuilder.appendFormalLine("}");
-		            	bodyBuilder.append("\n");
-		            }		            
+
+				// the per-field code lives in the ITD so it follows the entity
+				bodyBuilder.appendFormalLine("// type test values, save new record and verify it");
+				appendStep(bodyBuilder, "fillForm(driver);", "fill", options);
+				appendStep(bodyBuilder, "page.submit();", "submit", options);
+				appendStep(bodyBuilder, "verifyShowPage(driver);", "verify", options);
+				if (options.isJourney()) {
+					bodyBuilder.append("\n");
+					bodyBuilder.appendFormalLine("// find, update and delete the saved record");
+					// the update takes a DataOnDemand record, whose values differ from the test values
+					final String formBackingType = context.getFormBackingType().getSimpleTypeName();
+					appendJourney(bodyBuilder, context, options, baseUrl,
+							"final " + formBackingType + " updated = new " + getDataOnDemandType(context).getSimpleTypeName() + "().getNewTransient" + formBackingType + "(0);",
+							"fillForm(driver, updated);", "verifyShowPage(driver, updated);");
 				}
 			}
-		
-		final List<AnnotationMetadataBuilder> methodAnnotationTest = new ArrayList<AnnotationMetadataBuilder>();
-		methodAnnotationTest.add(new AnnotationMetadataBuilder(TEST));
-		final MethodMetadataBuilder methodBuilderTest = new MethodMetadataBuilder(
-				declaredByMetadataId, Modifier.PUBLIC, new JavaSymbolName(
-						"test"), JavaType.VOID_PRIMITIVE,
-						bodyBuilder);
-		methodBuilderTest.setAnnotations(methodAnnotationTest);
-		return methodBuilderTest;
+
+			final List<AnnotationMetadataBuilder> methodAnnotationTest = new ArrayList<AnnotationMetadataBuilder>();
+			methodAnnotationTest.add(new AnnotationMetadataBuilder(TEST));
+			final MethodMetadataBuilder methodBuilderTest = new MethodMetadataBuilder(
+					declaredByMetadataId, Modifier.PUBLIC, new JavaSymbolName(
+							"test"), JavaType.VOID_PRIMITIVE,
+							bodyBuilder);
+			methodBuilderTest.setAnnotations(methodAnnotationTest);
+			return methodBuilderTest;
+		}
+		finally {
+			statistics.record("getTestMethod", statisticsStart);
+		}
 	}
 		
-		private boolean isSpecialType(final JavaType javaType) {
-	        return typeLocationService.isInProject(javaType);
-	    }
+	/**
+	 * Appends the rest of the CRUD journey of the record the test has just
+	 * created and verified: it is looked up on the list page by the id of its
+	 * show page, then updated and deleted if the controller allows it.
+	 * 
+	 * @param updateDeclaration declares the values of the update, which must
+	 *        differ from those of the creation so the update is verified
+	 * @param fill the statement filling the update form
+	 * @param verify the statement verifying the show page after the update
+	 */
+	private void appendJourney(InvocableMemberBodyBuilder bodyBuilder, WebdriverGenerationContext context, WebdriverTestOptions options,
+			String baseUrl, String updateDeclaration, String fill, String verify) {
+		bodyBuilder.appendFormalLine("final String id = page.getRecordId();");
+		appendStep(bodyBuilder, "page.openList(" + baseUrl + ");", "list", options);
+		bodyBuilder.appendFormalLine("Assert.assertTrue(\"The list page does not link to record \" + id, page.isListed(id));");
+		if (context.getWebScaffoldMetadata().getAnnotationValues().isUpdate()) {
+			bodyBuilder.appendFormalLine(updateDeclaration);
+			appendStep(bodyBuilder, "page.openUpdateForm(" + baseUrl + ", id).clearInputs();", "navigate update", options);
+			appendStep(bodyBuilder, fill, "fill update", options);
+			appendStep(bodyBuilder, "page.submit();", "submit update", options);
+			appendStep(bodyBuilder, verify, "verify update", options);
+		}
+		if (context.getWebScaffoldMetadata().getAnnotationValues().isDelete()) {
+			appendStep(bodyBuilder, "page.openShow(" + baseUrl + ", id);", "show", options);
+			appendStep(bodyBuilder, "page.delete(id);", "delete", options);
+			bodyBuilder.appendFormalLine("Assert.assertFalse(\"Record \" + id + \" is still listed after its deletion\", page.isListed(id));");
+		}
+	}
+	
+	/**
+	 * Appends a step of the test, timing it if requested. A timed step
+	 * expects the local variable <code>start</code> to hold its start time.
+	 */
+	private void appendStep(InvocableMemberBodyBuilder bodyBuilder, String statement, String step, WebdriverTestOptions options) {
+		bodyBuilder.appendFormalLine(statement);
+		if (options.isTimed()) {
+			bodyBuilder.appendFormalLine("recordTiming(\"" + step + "\", start);");
+			bodyBuilder.appendFormalLine("start = System.nanoTime();");
+		}
+	}
 	
-	private MethodMetadataBuilder getAfterMethod(String declaredByMetadataId, JavaType controller) {
+	/**
+	 * Returns the method the test and its ITD record the duration of a step
+	 * with.
+	 */
+	private MethodMetadataBuilder getRecordTimingMethod(String declaredByMetadataId, WebdriverGenerationContext context) {
+		final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+		bodyBuilder.appendFormalLine(getTimingsType(context.getPath().getModule()).getSimpleTypeName()
+				+ ".record(\"" + context.getFormBackingType().getSimpleTypeName() + "\", step, start);");
+		return new MethodMetadataBuilder(declaredByMetadataId, Modifier.PRIVATE,
+				new JavaSymbolName("recordTiming"), JavaType.VOID_PRIMITIVE,
+				AnnotatedJavaType.convertFromJavaTypes(JavaType.STRING, JavaType.LONG_PRIMITIVE),
+				Arrays.asList(new JavaSymbolName("step"), new JavaSymbolName("start")), bodyBuilder);
+	}
+	
+	private MethodMetadataBuilder getAfterMethod(String declaredByMetadataId, WebdriverGenerationContext context, WebdriverTestOptions options) {
 		final InvocableMemberBodyBuilder bodyBuilderAfter = new InvocableMemberBodyBuilder();
-		final ClassOrInterfaceTypeDetails controllerDetails = typeLocationService
-				.getTypeDetails(controller);
-		if (controllerDetails != null) {			
+		if (options.isThreadSafe()) {
+			bodyBuilderAfter.appendFormalLine("final WebDriver driver = " + DRIVER_HOLDER + ".get();");
+			bodyBuilderAfter.appendFormalLine(DRIVER_HOLDER + ".remove();");
+		}
+		if (options.isPooled()) {
+			bodyBuilderAfter.appendFormalLine(getDriverPoolType(context.getPath().getModule(), options.getDriverType()).getSimpleTypeName() + ".getShared().release(driver);");
+		}
+		else {
 			bodyBuilderAfter.appendFormalLine("driver.quit();");		
 		}
 		final List<AnnotationMetadataBuilder> methodAnnotationsAfter = new ArrayList<AnnotationMetadataBuilder>();
@@ -322,6 +839,53 @@ public class WebdriverOperationsImpl implements WebdriverOperations {
 		return methodBuilderAfter;
 	}
 	
+	/**
+	 * Returns the trigger annotation that makes {@link WebdriverMetadataProvider}
+	 * maintain the per-field code of the test.
+	 */
+	private AnnotationMetadataBuilder getWebdriverAnnotation(JavaType controller, WebdriverTestOptions options) {
+		final AnnotationMetadataBuilder annotationBuilder = new AnnotationMetadataBuilder(WebdriverAnnotationValues.ROO_WEBDRIVER);
+		annotationBuilder.addClassAttribute("controller", controller);
+		if (options.getTimeout() != WebdriverTestOptions.DEFAULT_TIMEOUT) {
+			annotationBuilder.addIntegerAttribute("timeout", options.getTimeout());
+		}
+		if (options.getPollInterval() != WebdriverTestOptions.DEFAULT_POLL_INTERVAL) {
+			annotationBuilder.addIntegerAttribute("pollInterval", (int) options.getPollInterval());
+		}
+		if (options.isScriptedFill()) {
+			annotationBuilder.addBooleanAttribute("scriptedFill", true);
+		}
+		if (options.isTimed()) {
+			annotationBuilder.addBooleanAttribute("timed", true);
+		}
+		if (options.getRecords() != WebdriverTestOptions.DEFAULT_RECORDS) {
+			annotationBuilder.addIntegerAttribute("records", options.getRecords());
+		}
+		if (options.isJourney()) {
+			annotationBuilder.addBooleanAttribute("journey", true);
+		}
+		if (options.isLean()) {
+			annotationBuilder.addBooleanAttribute("lean", true);
+		}
+		return annotationBuilder;
+	}
+	
+	private MethodMetadataBuilder getCreateDriverMethod(String declaredByMetadataId, WebdriverGenerationContext context, WebdriverTestOptions options) {
+		final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+		// isLean() is introduced from the lean attribute of @RooWebdriver
+		bodyBuilder.appendFormalLine("if (isLean()) {");
+		bodyBuilder.indent();
+		bodyBuilder.appendFormalLine("return " + getLeanProfileType(context.getPath().getModule(), options.getDriverType()).getSimpleTypeName() + ".createDriver();");
+		bodyBuilder.indentRemove();
+		bodyBuilder.appendFormalLine("}");
+		for (final String statement : options.getDriverType().getCreateStatements().split("\n")) {
+			bodyBuilder.appendFormalLine(statement.trim());
+		}
+		return new MethodMetadataBuilder(declaredByMetadataId,
+				Modifier.PRIVATE, new JavaSymbolName("createDriver"),
+				WEBDRIVER, bodyBuilder);
+	}
+	
     private FieldMetadataBuilder getDriverField(String declaredByMetadataId) {
     	final FieldMetadataBuilder fieldBuilder = new FieldMetadataBuilder(declaredByMetadataId, // Metadata ID provided by supertype
 	            Modifier.PRIVATE, 
@@ -332,109 +896,360 @@ public class WebdriverOperationsImpl implements WebdriverOperations {
         return fieldBuilder;
     }    
     
-    private String convertToInitializer(final FieldMetadata field) {
-        String initializer = " ";
-        short index = 1;
-        final AnnotationMetadata min = MemberFindingUtils.getAnnotationOfType(
-                field.getAnnotations(), MIN);
-        if (min != null) {
-            final AnnotationAttributeValue<?> value = min
-                    .getAttribute(new JavaSymbolName("value"));
-            if (value != null) {
-                index = new Short(value.getValue().toString());
-            }
-        }
-        final JavaType fieldType = field.getFieldType();
-        if (field.getFieldName().getSymbolName().contains("email")
-                || field.getFieldName().getSymbolName().contains("Email")) {
-            initializer = "some@email.com";
-        }
-        else if (fieldType.equals(JavaType.STRING)) {
-            initializer = "some"
-                    + field.getFieldName()
-                            .getSymbolNameCapitalisedFirstLetter() + index;
-        }
-        else if (fieldType.equals(new JavaType(Date.class.getName()))
-                || fieldType.equals(new JavaType(Calendar.class.getName()))) {
-            final Calendar cal = Calendar.getInstance();
-            AnnotationMetadata dateTimeFormat = null;
-            String style = null;
-            if ((dateTimeFormat = MemberFindingUtils.getAnnotationOfType(
-                    field.getAnnotations(), DATE_TIME_FORMAT)) != null) {
-                final AnnotationAttributeValue<?> value = dateTimeFormat
-                        .getAttribute(new JavaSymbolName("style"));
-                if (value != null) {
-                    style = value.getValue().toString();
-                }
-            }
-            if (MemberFindingUtils.getAnnotationOfType(field.getAnnotations(),
-                    PAST) != null) {
-                cal.add(Calendar.YEAR, -1);
-                cal.add(Calendar.MONTH, -1);
-                cal.add(Calendar.DAY_OF_MONTH, -1);
-            }
-            else if (MemberFindingUtils.getAnnotationOfType(
-                    field.getAnnotations(), FUTURE) != null) {
-                cal.add(Calendar.YEAR, 1);
-                cal.add(Calendar.MONTH, 1);
-                cal.add(Calendar.DAY_OF_MONTH, 1);
-            }
-            if (style != null) {
-                if (style.startsWith("-")) {
-                    initializer = ((SimpleDateFormat) DateFormat
-                            .getTimeInstance(
-                                    DateTime.parseDateFormat(style.charAt(1)),
-                                    Locale.getDefault())).format(cal.getTime());
-                }
-                else if (style.endsWith("-")) {
-                    initializer = ((SimpleDateFormat) DateFormat
-                            .getDateInstance(
-                                    DateTime.parseDateFormat(style.charAt(0)),
-                                    Locale.getDefault())).format(cal.getTime());
-                }
-                else {
-                    initializer = ((SimpleDateFormat) DateFormat
-                            .getDateTimeInstance(
-                                    DateTime.parseDateFormat(style.charAt(0)),
-                                    DateTime.parseDateFormat(style.charAt(1)),
-                                    Locale.getDefault())).format(cal.getTime());
-                }
-            }
-            else {
-                initializer = ((SimpleDateFormat) DateFormat.getDateInstance(
-                        DateFormat.SHORT, Locale.getDefault())).format(cal
-                        .getTime());
-            }
-
-        }
-        else if (fieldType.equals(JavaType.BOOLEAN_OBJECT)
-                || fieldType.equals(JavaType.BOOLEAN_PRIMITIVE)) {
-            initializer = Boolean.valueOf(false).toString();
-        }
-        else if (fieldType.equals(JavaType.INT_OBJECT)
-                || fieldType.equals(JavaType.INT_PRIMITIVE)) {
-            initializer = Integer.valueOf(index).toString();
-        }
-        else if (fieldType.equals(JavaType.DOUBLE_OBJECT)
-                || fieldType.equals(JavaType.DOUBLE_PRIMITIVE)) {
-            initializer = Double.toString(index);
-        }
-        else if (fieldType.equals(JavaType.FLOAT_OBJECT)
-                || fieldType.equals(JavaType.FLOAT_PRIMITIVE)) {
-            initializer = Float.toString(index);
-        }
-        else if (fieldType.equals(LONG_OBJECT)
-                || fieldType.equals(JavaType.LONG_PRIMITIVE)) {
-            initializer = Long.valueOf(index).toString();
-        }
-        else if (fieldType.equals(JavaType.SHORT_OBJECT)
-                || fieldType.equals(JavaType.SHORT_PRIMITIVE)) {
-            initializer = Short.valueOf(index).toString();
-        }
-        else if (fieldType.equals(BIG_DECIMAL)) {
-            initializer = new BigDecimal(index).toString();
-        }
-        return initializer;
+    /**
+     * Returns a static holder confining each driver to the thread running the
+     * test, so the test class is safe under parallel Surefire execution.
+     */
+    private FieldMetadataBuilder getDriverHolderField(String declaredByMetadataId) {
+    	final JavaType holderType = new JavaType(ThreadLocal.class.getName(), 0, DataType.TYPE, null, Arrays.asList(WEBDRIVER));
+    	final FieldMetadataBuilder fieldBuilder = new FieldMetadataBuilder(declaredByMetadataId,
+    			Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL,
+    			new ArrayList<AnnotationMetadataBuilder>(),
+    			new JavaSymbolName(DRIVER_HOLDER),
+    			holderType);
+    	fieldBuilder.setFieldInitializer("new ThreadLocal<WebDriver>()");
+    	return fieldBuilder;
+    }
+    
+    /**
+     * Returns the page object of the form backing object of the given
+     * controller, which lives next to the controller's test.
+     */
+    private JavaType getPageType(WebdriverGenerationContext context) {
+    	return new JavaType(context.getController().getPackage().getFullyQualifiedPackageName() + "." + context.getFormBackingType().getSimpleTypeName() + "Page");
+    }
+    
+    /**
+     * Builds the page object of the given controller's form backing object.
+     * Only the driver is declared in the class; the navigation and the cached
+     * element accessors are maintained in its ITD by
+     * {@link WebdriverPageMetadataProvider}.
+     * 
+     * @return the page object, or <code>null</code> if it exists already
+     */
+    private ClassOrInterfaceTypeDetails buildPageClass(WebdriverGenerationContext context, JavaType pageType) {
+    	final String declaredByMetadataId = PhysicalTypeIdentifier.createIdentifier(pageType,
+    			Path.SRC_TEST_JAVA.getModulePathId(context.getPath().getModule()));
+    	if (metadataService.get(declaredByMetadataId) != null) {
+    		return null;
+    	}
+    	final JavaSymbolName driver = new JavaSymbolName("driver");
+    	
+    	final InvocableMemberBodyBuilder constructorBody = new InvocableMemberBodyBuilder();
+    	constructorBody.appendFormalLine("this.driver = driver;");
+    	final ConstructorMetadataBuilder constructorBuilder = new ConstructorMetadataBuilder(declaredByMetadataId);
+    	constructorBuilder.setModifier(Modifier.PUBLIC);
+    	constructorBuilder.setParameterTypes(AnnotatedJavaType.convertFromJavaTypes(WEBDRIVER));
+    	constructorBuilder.setParameterNames(Arrays.asList(driver));
+    	constructorBuilder.setBodyBuilder(constructorBody);
+    	
+    	final InvocableMemberBodyBuilder getterBody = new InvocableMemberBodyBuilder();
+    	getterBody.appendFormalLine("return driver;");
+    	
+    	final AnnotationMetadataBuilder annotationBuilder = new AnnotationMetadataBuilder(WebdriverPageAnnotationValues.ROO_WEBDRIVER_PAGE);
+    	annotationBuilder.addClassAttribute("controller", context.getController());
+    	
+    	final ClassOrInterfaceTypeDetailsBuilder cidBuilder = new ClassOrInterfaceTypeDetailsBuilder(
+    			declaredByMetadataId, Modifier.PUBLIC, pageType, PhysicalTypeCategory.CLASS);
+    	cidBuilder.add(getImport(declaredByMetadataId, WEBDRIVER.getFullyQualifiedTypeName()));
+    	cidBuilder.addAnnotation(annotationBuilder);
+    	cidBuilder.addField(new FieldMetadataBuilder(declaredByMetadataId, Modifier.PRIVATE | Modifier.FINAL,
+    			new ArrayList<AnnotationMetadataBuilder>(), driver, WEBDRIVER));
+    	cidBuilder.addConstructor(constructorBuilder);
+    	cidBuilder.addMethod(new MethodMetadataBuilder(declaredByMetadataId, Modifier.PUBLIC,
+    			new JavaSymbolName("getDriver"), WEBDRIVER, getterBody));
+    	return cidBuilder.build();
+    }
+    
+    private void writePageClasses(Map<JavaType, ClassOrInterfaceTypeDetails> pageClasses) {
+    	for (final ClassOrInterfaceTypeDetails pageClass : pageClasses.values()) {
+    		if (pageClass != null) {
+    			typeManagementService.createOrUpdateTypeOnDisk(pageClass);
+    		}
+    	}
+    }
+    
+    /**
+     * Returns the import statements of a template based source for the given
+     * types outside its package.
+     */
+    private String getImportStatements(JavaType name, List<JavaType> types) {
+    	final StringBuilder importStatements = new StringBuilder();
+    	for (final JavaType type : types) {
+    		if (!type.getPackage().equals(name.getPackage())) {
+    			importStatements.append("import ").append(type.getFullyQualifiedTypeName()).append(";\n");
+    		}
+    	}
+    	return importStatements.toString().trim();
+    }
+    
+    /**
+     * Returns the DataOnDemand of the given controller's form backing object,
+     * which Roo keeps next to the entity in the test sources.
+     */
+    private JavaType getDataOnDemandType(WebdriverGenerationContext context) {
+    	return new JavaType(context.getFormBackingType().getFullyQualifiedTypeName() + "DataOnDemand");
+    }
+    
+    /**
+     * Returns the DataOnDemand of the given controller's form backing object,
+     * collecting it for creation by {@link #installDataOnDemands(Map)} unless
+     * it exists already.
+     * 
+     * @return the DataOnDemand type
+     */
+    private JavaType getDataOnDemandType(WebdriverGenerationContext context, Map<JavaType, JavaType> dataOnDemandTypes) {
+    	final JavaType dodType = getDataOnDemandType(context);
+    	if (typeLocationService.getTypeDetails(dodType) == null) {
+    		Validate.isTrue(dataOnDemandOperations.isDataOnDemandInstallationPossible(),
+    				"A DataOnDemand for '%s' is required but cannot be created in this project", context.getFormBackingType());
+    		dataOnDemandTypes.put(dodType, context.getFormBackingType());
+    	}
+    	return dodType;
+    }
+    
+    /**
+     * Returns a field the form backing object's DataOnDemand fills from the
+     * DataOnDemand of another entity. The test creates its DataOnDemand
+     * without a Spring context, so such a DataOnDemand would find its
+     * related DataOnDemands unset.
+     * 
+     * @return the first such field, or <code>null</code> if there is none
+     */
+    private FieldMetadata getReferenceField(WebdriverGenerationContext context) {
+    	for (final FieldMetadata field : context.getFormBackingMemberDetails().getFields()) {
+    		if (MemberFindingUtils.getAnnotationOfType(field.getAnnotations(), MANY_TO_ONE) != null
+    				|| MemberFindingUtils.getAnnotationOfType(field.getAnnotations(), ONE_TO_ONE) != null) {
+    			return field;
+    		}
+    	}
+    	return null;
+    }
+    
+    /**
+     * Creates the collected DataOnDemands, keyed by their type, for the form
+     * backing objects they are mapped to.
+     */
+    private void installDataOnDemands(Map<JavaType, JavaType> dataOnDemandTypes) {
+    	for (final Map.Entry<JavaType, JavaType> dataOnDemandType : dataOnDemandTypes.entrySet()) {
+    		dataOnDemandOperations.newDod(dataOnDemandType.getValue(), dataOnDemandType.getKey());
+    	}
+    }
+    
+    private ImportMetadata getImport(String declaredByMetadataId, String typeName) {
+    	return new ImportMetadataBuilder(declaredByMetadataId, 0, new JavaPackage(typeName), new JavaType(typeName), false, false).build();
+    }
+    
+    /**
+     * Returns the pool of full and lean sessions of the given browser shared
+     * by the generated tests of the given module.
+     */
+    private JavaType getDriverPoolType(String moduleName, WebdriverDriverType driverType) {
+    	return new JavaType(projectOperations.getTopLevelPackage(moduleName).getFullyQualifiedPackageName() + "." + driverType.getName() + "DriverPool");
+    }
+    
+    /**
+     * Returns the factory of lean sessions of the given browser shared by the
+     * generated tests of the given module.
+     */
+    private JavaType getLeanProfileType(String moduleName, WebdriverDriverType driverType) {
+    	return new JavaType(projectOperations.getTopLevelPackage(moduleName).getFullyQualifiedPackageName() + "." + driverType.getName() + "LeanProfile");
+    }
+    
+    /**
+     * Returns the fixture starting the application of the given module for
+     * its tests.
+     */
+    private JavaType getApplicationType(String moduleName) {
+    	return new JavaType(projectOperations.getTopLevelPackage(moduleName).getFullyQualifiedPackageName() + ".WebdriverApplication");
+    }
+    
+    /**
+     * Returns the recorder of the step durations of the given module's tests.
+     */
+    private JavaType getTimingsType(String moduleName) {
+    	return new JavaType(projectOperations.getTopLevelPackage(moduleName).getFullyQualifiedPackageName() + ".WebdriverTimings");
+    }
+    
+    /**
+     * Returns the latency histogram shared by the load tests of the given
+     * module.
+     */
+    private JavaType getHistogramType(String moduleName) {
+    	return new JavaType(projectOperations.getTopLevelPackage(moduleName).getFullyQualifiedPackageName() + ".WebdriverLatencyHistogram");
+    }
+    
+    /**
+     * Installs the sources shared by the generated tests of the given module.
+     */
+    private void installSupportSources(String moduleName, WebdriverTestOptions options, WebdriverFingerprints fingerprints) {
+    	installApplication(moduleName, fingerprints);
+    	// Any test can be switched to lean sessions through @RooWebdriver
+    	installLeanProfile(moduleName, options.getDriverType(), options.isLean() ? options.getBlockedUrls() : null, fingerprints);
+    	if (options.isPooled()) {
+    		installDriverPool(moduleName, options.getDriverType(), fingerprints);
+    	}
+    	if (options.isTimed()) {
+    		final JavaType timingsType = getTimingsType(moduleName);
+    		writeTestSource(moduleName, timingsType, getTemplate("WebdriverTimings.java-template").replace(
+    				"__TOP_LEVEL_PACKAGE__", timingsType.getPackage().getFullyQualifiedPackageName()), fingerprints);
+    	}
+    }
+    
+    /**
+     * Writes the fixture running the application in an embedded servlet
+     * container into the test sources of the given module, together with the
+     * container's dependencies.
+     */
+    private void installApplication(String moduleName, WebdriverFingerprints fingerprints) {
+    	addDependencies(moduleName, embeddedDependencies);
+    	
+    	final JavaType applicationType = getApplicationType(moduleName);
+    	String contents = getTemplate("WebdriverApplication.java-template");
+    	contents = contents.replace("__TOP_LEVEL_PACKAGE__", applicationType.getPackage().getFullyQualifiedPackageName());
+    	contents = contents.replace("__CONTEXT_PATH__", projectOperations.getProjectName(moduleName));
+    	writeTestSource(moduleName, applicationType, contents, fingerprints);
+    }
+    
+    /**
+     * Writes the browser session pool into the test sources of the given
+     * module unless it is already up to date.
+     */
+    private void installDriverPool(String moduleName, WebdriverDriverType driverType, WebdriverFingerprints fingerprints) {
+    	final JavaType poolType = getDriverPoolType(moduleName, driverType);
+    	final StringBuilder driverImports = new StringBuilder();
+    	for (final String driverImport : driverType.getImports()) {
+    		driverImports.append("import ").append(driverImport).append(";\n");
+    	}
+    	String contents = getTemplate("WebDriverPool.java-template");
+    	contents = contents.replace("__TOP_LEVEL_PACKAGE__", poolType.getPackage().getFullyQualifiedPackageName());
+    	contents = contents.replace("__POOL_CLASS__", poolType.getSimpleTypeName());
+    	// the lean profile lives in the same package
+    	contents = contents.replace("__LEAN_PROFILE_CLASS__", getLeanProfileType(moduleName, driverType).getSimpleTypeName());
+    	contents = contents.replace("__CREATE_DRIVER__", driverType.getCreateStatements());
+    	contents = contents.replace("__DRIVER_IMPORTS__", driverImports.toString().trim());
+    	writeTestSource(moduleName, poolType, contents, fingerprints);
+    }
+    
+    /**
+     * Writes the factory of lean sessions of the given browser into the test
+     * sources of the given module unless it is already up to date. Without
+     * blocked URLs, an existing factory is left as it is.
+     */
+    private void installLeanProfile(String moduleName, WebdriverDriverType driverType, List<String> blockedUrls, WebdriverFingerprints fingerprints) {
+    	final JavaType profileType = getLeanProfileType(moduleName, driverType);
+    	if (blockedUrls == null && fileManager.exists(getTestSourceIdentifier(moduleName, profileType))) {
+    		return;
+    	}
+    	final Set<String> driverImports = new TreeSet<String>(driverType.getImports());
+    	driverImports.addAll(driverType.getLeanImports());
+    	final StringBuilder importStatements = new StringBuilder();
+    	for (final String driverImport : driverImports) {
+    		importStatements.append("import ").append(driverImport).append(";\n");
+    	}
+    	String contents = getTemplate("WebdriverLeanProfile.java-template");
+    	contents = contents.replace("__TOP_LEVEL_PACKAGE__", profileType.getPackage().getFullyQualifiedPackageName());
+    	contents = contents.replace("__PROFILE_CLASS__", profileType.getSimpleTypeName());
+    	contents = contents.replace("__DRIVER_IMPORTS__", importStatements.toString().trim());
+    	contents = contents.replace("__CREATE_DRIVER__", driverType.getCreateStatements().replace("\n        ", "\n            "));
+    	contents = contents.replace("__CREATE_LEAN_DRIVER__", driverType.getLeanCreateStatements());
+    	contents = contents.replace("__BLOCKED_URLS__", StringUtils.join(blockedUrls == null ? Collections.<String> emptyList() : blockedUrls, ",").replace("\\", "\\\\").replace("\"", "\\\""));
+    	writeTestSource(moduleName, profileType, contents, fingerprints);
+    }
+    
+    /**
+     * Writes a generated test source unless it exists and was last written
+     * with the same contents.
+     */
+    private void writeTestSource(String moduleName, JavaType type, String contents, WebdriverFingerprints fingerprints) {
+    	final String identifier = getTestSourceIdentifier(moduleName, type);
+    	final String fingerprint = WebdriverFingerprints.fingerprint(contents);
+    	if (fileManager.exists(identifier)) {
+    		if (fingerprints.matches(type.getFullyQualifiedTypeName(), fingerprint)) {
+    			return;
+    		}
+    		// The fingerprint of a support source is that of its contents as written
+    		if (fingerprints.contains(type.getFullyQualifiedTypeName())
+    				&& !fingerprints.matches(type.getFullyQualifiedTypeName(), WebdriverFingerprints.fingerprint(readTestSource(identifier)))) {
+    			LOGGER.warning("The file '" + type.getFullyQualifiedTypeName() + "' has been edited since it was generated; delete it to have it generated again");
+    			return;
+    		}
+    	}
+    	fileManager.createOrUpdateTextFileIfRequired(identifier, contents, false);
+    	fingerprints.record(type.getFullyQualifiedTypeName(), fingerprint);
+    }
+    
+    /**
+     * Records the inputs a test was generated from and its source as it was
+     * just written.
+     */
+    private void recordTest(WebdriverFingerprints fingerprints, String moduleName, JavaType testClass, String fingerprint) {
+    	fingerprints.record(testClass.getFullyQualifiedTypeName(), fingerprint);
+    	fingerprints.recordSource(testClass.getFullyQualifiedTypeName(), readTestSource(getTestSourceIdentifier(moduleName, testClass)));
+    }
+    
+    private String getTestSourceIdentifier(String moduleName, JavaType type) {
+    	return projectOperations.getPathResolver().getIdentifier(
+    			LogicalPath.getInstance(Path.SRC_TEST_JAVA, moduleName),
+    			type.getFullyQualifiedTypeName().replace('.', File.separatorChar) + ".java");
+    }
+    
+    /**
+     * Reads a test source through the file manager, which also sees writes
+     * it has not flushed yet.
+     */
+    private String readTestSource(String identifier) {
+    	InputStream inputStream = null;
+    	try {
+    		inputStream = fileManager.getInputStream(identifier);
+    		return IOUtils.toString(inputStream);
+    	}
+    	catch (final IOException e) {
+    		throw new IllegalStateException("Unable to read '" + identifier + "'", e);
+    	}
+    	finally {
+    		IOUtils.closeQuietly(inputStream);
+    	}
+    }
+    
+    private WebdriverFingerprints getFingerprints(Map<String, WebdriverFingerprints> fingerprints, String moduleName) {
+    	WebdriverFingerprints moduleFingerprints = fingerprints.get(moduleName);
+    	if (moduleFingerprints == null) {
+    		moduleFingerprints = new WebdriverFingerprints(new File(projectOperations.getPathResolver().getIdentifier(
+    				LogicalPath.getInstance(Path.ROOT, moduleName), "target/" + WebdriverFingerprints.FILE_NAME)));
+    		fingerprints.put(moduleName, moduleFingerprints);
+    	}
+    	return moduleFingerprints;
+    }
+    
+    /**
+     * Returns the fingerprint of everything a test class is generated from:
+     * the controller, its scaffold path, the form backing object and the
+     * generation options. The form backing object's fields are left out as
+     * the code depending on them lives in the test's ITD, so changing a field
+     * must not regenerate (and overwrite) the test class itself.
+     */
+    private String getFingerprint(WebdriverGenerationContext context, WebdriverTestOptions options) {
+    	final StringBuilder inputs = new StringBuilder();
+    	inputs.append(context.getController().getFullyQualifiedTypeName()).append('\n');
+    	inputs.append(context.getWebScaffoldMetadata().getAnnotationValues().getPath()).append('\n');
+    	inputs.append(context.getFormBackingType().getFullyQualifiedTypeName()).append('\n');
+    	inputs.append(options);
+    	return WebdriverFingerprints.fingerprint(inputs.toString());
+    }
+    
+    private String getTemplate(String templateName) {
+    	InputStream inputStream = null;
+    	try {
+    		inputStream = FileUtils.getInputStream(getClass(), templateName);
+    		return IOUtils.toString(inputStream);
+    	}
+    	catch (final IOException e) {
+    		throw new IllegalStateException("Unable to load template '" + templateName + "'", e);
+    	}
+    	finally {
+    		IOUtils.closeQuietly(inputStream);
+    	}
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package cz.bcp.roo.webdriver;
+
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.annotations.populator.AbstractAnnotationValues;
+import org.springframework.roo.classpath.details.annotations.populator.AutoPopulate;
+import org.springframework.roo.classpath.details.annotations.populator.AutoPopulationUtils;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Represents a parsed {@link RooWebdriverPage} annotation.
+ * 
+ * @since 1.1
+ */
+public class WebdriverPageAnnotationValues extends AbstractAnnotationValues {
+
+    public static final JavaType ROO_WEBDRIVER_PAGE = new JavaType(
+            RooWebdriverPage.class.getName());
+
+    @AutoPopulate private JavaType controller;
+
+    /**
+     * Constructor
+     * 
+     * @param governorPhysicalTypeMetadata the metadata of the annotated page
+     *            object
+     */
+    public WebdriverPageAnnotationValues(
+            final PhysicalTypeMetadata governorPhysicalTypeMetadata) {
+        super(governorPhysicalTypeMetadata, ROO_WEBDRIVER_PAGE);
+        AutoPopulationUtils.populate(this, annotationMetadata);
+    }
+
+    public JavaType getController() {
+        return controller;
+    }
+}
@@ -0,0 +1,309 @@
+package cz.bcp.roo.webdriver;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.roo.classpath.PhysicalTypeIdentifierNamingUtils;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.ItdTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.MemberFindingUtils;
+import org.springframework.roo.classpath.details.MethodMetadata;
+import org.springframework.roo.classpath.details.MethodMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.classpath.itd.AbstractItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.model.DataType;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+
+/**
+ * Metadata of the ITD of a page object. It uses an {@link ItdTypeDetailsBuilder} provided by
+ * {@link AbstractItdTypeDetailsProvidingMetadataItem} to introduce the navigation between the create form, show page,
+ * list page and update form of a form backing object, the deletion of a record and an accessor for each element of these pages into the annotated page
+ * object. Elements are looked up on first use and cached until the page object navigates, so the locators of a form
+ * backing object live in a single class shared by all of its tests.
+ *
+ * @since 1.1
+ */
+public class WebdriverPageMetadata extends AbstractItdTypeDetailsProvidingMetadataItem {
+
+    // Constants
+    private static final String PROVIDES_TYPE_STRING = WebdriverPageMetadata.class.getName();
+    private static final String PROVIDES_TYPE = MetadataIdentificationUtils.create(PROVIDES_TYPE_STRING);
+
+    private static final JavaType BY = new JavaType("org.openqa.selenium.By");
+    private static final JavaType WEB_ELEMENT = new JavaType("org.openqa.selenium.WebElement");
+    private static final JavaType HASH_MAP = new JavaType("java.util.HashMap");
+    private static final JavaType ELEMENT_MAP = new JavaType("java.util.Map", 0, DataType.TYPE, null, Arrays.asList(BY, WEB_ELEMENT));
+    private static final JavaSymbolName ELEMENTS = new JavaSymbolName("elements");
+    private static final JavaSymbolName BASE_URL = new JavaSymbolName("baseUrl");
+    private static final JavaSymbolName ID = new JavaSymbolName("id");
+
+    public static final String getMetadataIdentiferType() {
+        return PROVIDES_TYPE;
+    }
+
+    public static final String createIdentifier(JavaType javaType, LogicalPath path) {
+        return PhysicalTypeIdentifierNamingUtils.createIdentifier(PROVIDES_TYPE_STRING, javaType, path);
+    }
+
+    public static final JavaType getJavaType(String metadataIdentificationString) {
+        return PhysicalTypeIdentifierNamingUtils.getJavaType(PROVIDES_TYPE_STRING, metadataIdentificationString);
+    }
+
+    public static final LogicalPath getPath(String metadataIdentificationString) {
+        return PhysicalTypeIdentifierNamingUtils.getPath(PROVIDES_TYPE_STRING, metadataIdentificationString);
+    }
+
+    public static boolean isValid(String metadataIdentificationString) {
+        return PhysicalTypeIdentifierNamingUtils.isValid(PROVIDES_TYPE_STRING, metadataIdentificationString);
+    }
+
+    // Fields
+    private final JavaType formBackingType;
+    private final String path;
+    private final List<FieldMetadata> fields;
+    private final WebdriverViewIds viewIds;
+
+    /**
+     * Constructor
+     *
+     * @param identifier the metadata id
+     * @param aspectName the name of the ITD
+     * @param governorPhysicalTypeMetadata the annotated page object
+     * @param formBackingType the form backing object of the controller
+     * @param path the path the controller is mapped to, e.g. <code>people</code>
+     * @param fields the fields rendered as simple inputs on the create form
+     * @param viewIds the ids of the elements the controller's views render for these fields
+     */
+    public WebdriverPageMetadata(String identifier, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata,
+            JavaType formBackingType, String path, List<FieldMetadata> fields, WebdriverViewIds viewIds) {
+        super(identifier, aspectName, governorPhysicalTypeMetadata);
+        Validate.isTrue(isValid(identifier), "Metadata identification string '" + identifier + "' does not appear to be a valid");
+        Validate.notNull(formBackingType, "Form backing type required");
+        Validate.notBlank(path, "Path required");
+        Validate.notNull(fields, "Fields required");
+        Validate.notNull(viewIds, "View ids required");
+
+        this.formBackingType = formBackingType;
+        this.path = path;
+        this.fields = Collections.unmodifiableList(new ArrayList<FieldMetadata>(fields));
+        this.viewIds = viewIds;
+
+        if (!isValid()) {
+            return;
+        }
+
+        builder.getImportRegistrationResolver().addImports(BY, WEB_ELEMENT, ELEMENT_MAP, HASH_MAP);
+        builder.addField(getElementsField());
+        addMethod(getElementMethod());
+        addMethod(getClearElementsMethod());
+        addMethod(getOpenMethod("openCreateForm", "?form"));
+        addMethod(getOpenMethod("openList", ""));
+        addMethod(getOpenRecordMethod("openShow", ""));
+        addMethod(getOpenRecordMethod("openUpdateForm", "?form"));
+        addMethod(getSubmitMethod());
+        addMethod(getRecordIdMethod());
+        addMethod(getIsListedMethod());
+        addMethod(getDeleteMethod());
+        addMethod(getClearInputsMethod());
+        addMethod(getClearTextMethod());
+        addMethod(getElementAccessor(new JavaSymbolName("getListTable"), "By.tagName(\"table\")"));
+        // Only elements the views render get an accessor
+        for (final FieldMetadata field : this.fields) {
+            final String name = field.getFieldName().getSymbolNameCapitalisedFirstLetter();
+            final String inputId = viewIds.getInputId(field);
+            if (inputId != null) {
+                addMethod(getElementAccessor(new JavaSymbolName("get" + name + "Input"), "By.id(\"" + inputId + "\")"));
+            }
+            final String resultId = viewIds.getResultId(formBackingType, field);
+            if (resultId != null) {
+                addMethod(getElementAccessor(new JavaSymbolName("get" + name + "Output"), "By.id(\"" + resultId + "\")"));
+            }
+        }
+
+        // Create a representation of the desired output ITD
+        itdTypeDetails = builder.build();
+    }
+
+    private FieldMetadataBuilder getElementsField() {
+        final FieldMetadataBuilder fieldBuilder = new FieldMetadataBuilder(getId(), Modifier.PRIVATE | Modifier.FINAL,
+                new ArrayList<AnnotationMetadataBuilder>(), ELEMENTS, ELEMENT_MAP);
+        fieldBuilder.setFieldInitializer("new HashMap<By, WebElement>()");
+        return fieldBuilder;
+    }
+
+    /**
+     * Returns the element with the given locator on the current page, looking
+     * it up only on first use.
+     */
+    private MethodMetadataBuilder getElementMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("WebElement element = " + ELEMENTS + ".get(by);");
+        bodyBuilder.appendFormalLine("if (element == null) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("element = getDriver().findElement(by);");
+        bodyBuilder.appendFormalLine(ELEMENTS + ".put(by, element);");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("return element;");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName("element"), WEB_ELEMENT,
+                AnnotatedJavaType.convertFromJavaTypes(BY), Arrays.asList(new JavaSymbolName("by")), bodyBuilder);
+    }
+
+    /**
+     * Forgets the cached elements, which go stale once the browser leaves the
+     * page they were found on.
+     */
+    private MethodMetadataBuilder getClearElementsMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine(ELEMENTS + ".clear();");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName("clearElements"),
+                JavaType.VOID_PRIMITIVE, bodyBuilder);
+    }
+
+    private MethodMetadataBuilder getOpenMethod(final String methodName, final String query) {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("getDriver().navigate().to(" + BASE_URL + " + \"/" + path + query + "\");");
+        bodyBuilder.appendFormalLine("clearElements();");
+        bodyBuilder.appendFormalLine("return this;");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName(methodName), destination,
+                AnnotatedJavaType.convertFromJavaTypes(JavaType.STRING), Arrays.asList(BASE_URL), bodyBuilder);
+    }
+
+    /**
+     * Opens a page of the record with the given id.
+     */
+    private MethodMetadataBuilder getOpenRecordMethod(final String methodName, final String query) {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("getDriver().navigate().to(" + BASE_URL + " + \"/" + path + "/\" + " + ID
+                + (query.length() == 0 ? "" : " + \"" + query + "\"") + ");");
+        bodyBuilder.appendFormalLine("clearElements();");
+        bodyBuilder.appendFormalLine("return this;");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName(methodName), destination,
+                AnnotatedJavaType.convertFromJavaTypes(JavaType.STRING, JavaType.STRING), Arrays.asList(BASE_URL, ID),
+                bodyBuilder);
+    }
+
+    /**
+     * Returns the id of the record on the show page, which is the last
+     * segment of its URL.
+     */
+    private MethodMetadataBuilder getRecordIdMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("final String url = getDriver().getCurrentUrl().replaceAll(\"[;?#].*$\", \"\");");
+        bodyBuilder.appendFormalLine("return url.substring(url.lastIndexOf('/') + 1);");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName("getRecordId"), JavaType.STRING,
+                bodyBuilder);
+    }
+
+    /**
+     * Tells whether the list page links to the record with the given id. The
+     * result is not cached, as it is checked before and after a deletion.
+     */
+    private MethodMetadataBuilder getIsListedMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("return !getDriver().findElements(By.cssSelector(\"table a[href$='/" + path + "/\" + " + ID
+                + " + \"']\")).isEmpty();");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName("isListed"),
+                JavaType.BOOLEAN_PRIMITIVE, AnnotatedJavaType.convertFromJavaTypes(JavaType.STRING), Arrays.asList(ID),
+                bodyBuilder);
+    }
+
+    /**
+     * Submits the delete form of the record with the given id on the current
+     * page, which leads to the list page. The form is submitted directly: its
+     * image button asks for a confirmation first, which Firefox shows as an
+     * alert blocking the session while HtmlUnit answers it by itself.
+     */
+    private MethodMetadataBuilder getDeleteMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("element(By.cssSelector(\"form[action$='/" + path + "/\" + " + ID
+                + " + \"']\")).submit();");
+        bodyBuilder.appendFormalLine("clearElements();");
+        bodyBuilder.appendFormalLine("return this;");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName("delete"), destination,
+                AnnotatedJavaType.convertFromJavaTypes(JavaType.STRING), Arrays.asList(ID), bodyBuilder);
+    }
+
+    /**
+     * Clears the text inputs of the update form, which show the saved values.
+     * Checkboxes and selects cannot be cleared; filling the form sets them.
+     */
+    private MethodMetadataBuilder getClearInputsMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        for (final FieldMetadata field : viewIds.getInputFields(fields)) {
+            bodyBuilder.appendFormalLine("clearText(get" + field.getFieldName().getSymbolNameCapitalisedFirstLetter() + "Input());");
+        }
+        bodyBuilder.appendFormalLine("return this;");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName("clearInputs"), destination,
+                bodyBuilder);
+    }
+
+    /**
+     * Clears the given element if it takes text, as
+     * <code>WebElement.clear()</code> fails on other elements.
+     */
+    private MethodMetadataBuilder getClearTextMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("final String tagName = element.getTagName().toLowerCase();");
+        bodyBuilder.appendFormalLine("final String type = String.valueOf(element.getAttribute(\"type\")).toLowerCase();");
+        bodyBuilder.appendFormalLine("if (tagName.equals(\"textarea\") || tagName.equals(\"input\") && !type.equals(\"checkbox\") && !type.equals(\"radio\") && !type.equals(\"hidden\")) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("element.clear();");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        return new MethodMetadataBuilder(getId(), Modifier.PRIVATE, new JavaSymbolName("clearText"), JavaType.VOID_PRIMITIVE,
+                AnnotatedJavaType.convertFromJavaTypes(WEB_ELEMENT), Arrays.asList(new JavaSymbolName("element")), bodyBuilder);
+    }
+
+    /**
+     * Submits the form of the current page, which leads to another page.
+     */
+    private MethodMetadataBuilder getSubmitMethod() {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("element(By.id(\"proceed\")).click();");
+        bodyBuilder.appendFormalLine("clearElements();");
+        bodyBuilder.appendFormalLine("return this;");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, new JavaSymbolName("submit"), destination, bodyBuilder);
+    }
+
+    private MethodMetadataBuilder getElementAccessor(final JavaSymbolName methodName, final String locator) {
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        bodyBuilder.appendFormalLine("return element(" + locator + ");");
+        return new MethodMetadataBuilder(getId(), Modifier.PUBLIC, methodName, WEB_ELEMENT, bodyBuilder);
+    }
+
+    /**
+     * Adds the method to the ITD unless the page object declares it itself.
+     */
+    private void addMethod(final MethodMetadataBuilder methodBuilder) {
+        final MethodMetadata existing = MemberFindingUtils.getDeclaredMethod(governorTypeDetails,
+                methodBuilder.getMethodName(), AnnotatedJavaType.convertFromAnnotatedJavaTypes(methodBuilder.getParameterTypes()));
+        if (existing == null) {
+            builder.addMethod(methodBuilder);
+        }
+    }
+
+    public String toString() {
+        final ToStringBuilder builder = new ToStringBuilder(this);
+        builder.append("identifier", getId());
+        builder.append("valid", valid);
+        builder.append("aspectName", aspectName);
+        builder.append("destinationType", destination);
+        builder.append("governor", governorPhysicalTypeMetadata.getId());
+        builder.append("formBackingType", formBackingType);
+        builder.append("itdTypeDetails", itdTypeDetails);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package cz.bcp.roo.webdriver;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.addon.web.mvc.controller.details.WebMetadataService;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.PhysicalTypeMetadata;
+import org.springframework.roo.classpath.TypeLocationService;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.itd.AbstractItdMetadataProvider;
+import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+
+/**
+ * Provides {@link WebdriverPageMetadata} for page objects annotated with {@link RooWebdriverPage}. The ITD is
+ * regenerated whenever the form backing object or the scaffold of its controller changes, so the tests using the page
+ * object never have to be.
+ *
+ * @since 1.1
+ */
+@Component
+@Service
+public final class WebdriverPageMetadataProvider extends AbstractItdMetadataProvider {
+
+    @Reference private WebMetadataService webMetadataService;
+    @Reference private WebdriverFieldCache fieldCache;
+    @Reference private WebdriverLocatorIndex locatorIndex;
+    @Reference private WebdriverStatistics statistics;
+
+    protected void activate(ComponentContext context) {
+        // New page objects are passed on by WebdriverNotificationFilter
+        addMetadataTrigger(WebdriverPageAnnotationValues.ROO_WEBDRIVER_PAGE);
+        // Every lookup is counted by the services themselves
+        metadataService = statistics.counting(MetadataService.class, metadataService, WebdriverStatistics.METADATA_SERVICE_CALLS);
+        typeLocationService = statistics.counting(TypeLocationService.class, typeLocationService, WebdriverStatistics.TYPE_LOCATION_SERVICE_CALLS);
+        memberDetailsScanner = statistics.counting(MemberDetailsScanner.class, memberDetailsScanner, WebdriverStatistics.MEMBER_DETAILS_SCANNER_CALLS);
+        webMetadataService = statistics.counting(WebMetadataService.class, webMetadataService, WebdriverStatistics.WEB_METADATA_SERVICE_CALLS);
+    }
+
+    protected void deactivate(ComponentContext context) {
+        removeMetadataTrigger(WebdriverPageAnnotationValues.ROO_WEBDRIVER_PAGE);
+    }
+
+    protected ItdTypeDetailsProvidingMetadataItem getMetadata(String metadataIdentificationString, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata, String itdFilename) {
+        final long start = System.nanoTime();
+        try {
+            return createMetadata(metadataIdentificationString, aspectName, governorPhysicalTypeMetadata);
+        }
+        finally {
+            statistics.record("getPageMetadata", start);
+        }
+    }
+
+    private WebdriverPageMetadata createMetadata(String metadataIdentificationString, JavaType aspectName, PhysicalTypeMetadata governorPhysicalTypeMetadata) {
+        final WebdriverPageAnnotationValues annotationValues = new WebdriverPageAnnotationValues(governorPhysicalTypeMetadata);
+        final JavaType controller = annotationValues.getController();
+        if (!annotationValues.isAnnotationFound() || controller == null) {
+            return null;
+        }
+        final ClassOrInterfaceTypeDetails controllerTypeDetails = typeLocationService.getTypeDetails(controller);
+        if (controllerTypeDetails == null) {
+            return null;
+        }
+        final WebdriverGenerationContext context = WebdriverGenerationContext.resolveIfAvailable(controllerTypeDetails,
+                getClass().getName(), metadataService, typeLocationService, memberDetailsScanner, webMetadataService, fieldCache);
+        if (context == null) {
+            return null;
+        }
+
+        metadataDependencyRegistry.registerDependency(context.getFormBackingTypeDetails().getDeclaredByMetadataId(), metadataIdentificationString);
+        metadataDependencyRegistry.registerDependency(context.getWebScaffoldMetadata().getId(), metadataIdentificationString);
+
+        final String path = context.getWebScaffoldMetadata().getAnnotationValues().getPath();
+        return new WebdriverPageMetadata(metadataIdentificationString, aspectName, governorPhysicalTypeMetadata,
+                context.getFormBackingType(), path, context.getFields(), locatorIndex.getViewIds(context.getPath().getModule(), path));
+    }
+
+    /**
+     * The resulting file name will be **_Roo_WebdriverPage.aj
+     */
+    public String getItdUniquenessFilenameSuffix() {
+        return "WebdriverPage";
+    }
+
+    protected String getGovernorPhysicalTypeIdentifier(String metadataIdentificationString) {
+        JavaType javaType = WebdriverPageMetadata.getJavaType(metadataIdentificationString);
+        LogicalPath path = WebdriverPageMetadata.getPath(metadataIdentificationString);
+        return PhysicalTypeIdentifier.createIdentifier(javaType, path);
+    }
+
+    protected String createLocalIdentifier(JavaType javaType, LogicalPath path) {
+        return WebdriverPageMetadata.createIdentifier(javaType, path);
+    }
+
+    public String getProvidesType() {
+        return WebdriverPageMetadata.getMetadataIdentiferType();
+    }
+}
@@ -0,0 +1,144 @@
+package cz.bcp.roo.webdriver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.support.logging.HandlerUtils;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Element;
+
+/**
+ * Distributes test classes over a fixed number of shards so that the
+ * recorded run time of every shard is as even as possible. Classes are placed
+ * longest first, each one into the shard with the least total run time so far.
+ * 
+ * @since 1.1
+ */
+final class WebdriverShardPlanner {
+
+    private static final Logger LOGGER = HandlerUtils
+            .getLogger(WebdriverShardPlanner.class);
+
+    /**
+     * Duration assumed for a test class when no run has been recorded at all
+     */
+    private static final double DEFAULT_DURATION = 1.0;
+
+    /**
+     * Plans the shards.
+     * 
+     * @param testClasses the fully qualified names of the classes to
+     *            distribute
+     * @param durations recorded run times in seconds, keyed by class name;
+     *            classes without a recording are assumed to take the average
+     *            of the recorded ones
+     * @param shards the number of shards (at least one)
+     * @return one list of class names per shard
+     */
+    static List<List<String>> plan(final List<String> testClasses,
+            final Map<String, Double> durations, final int shards) {
+        Validate.isTrue(shards > 0, "At least one shard is required");
+
+        double total = 0;
+        int recorded = 0;
+        for (final String testClass : testClasses) {
+            final Double duration = durations.get(testClass);
+            if (duration != null) {
+                total += duration;
+                recorded++;
+            }
+        }
+        final double average = recorded == 0 ? DEFAULT_DURATION : total
+                / recorded;
+
+        final List<String> ordered = new ArrayList<String>(testClasses);
+        Collections.sort(ordered, new Comparator<String>() {
+            public int compare(final String left, final String right) {
+                final int byDuration = Double.compare(
+                        getDuration(right, durations, average),
+                        getDuration(left, durations, average));
+                return byDuration != 0 ? byDuration : left.compareTo(right);
+            }
+        });
+
+        final List<List<String>> plan = new ArrayList<List<String>>(shards);
+        final double[] loads = new double[shards];
+        for (int i = 0; i < shards; i++) {
+            plan.add(new ArrayList<String>());
+        }
+        for (final String testClass : ordered) {
+            int lightest = 0;
+            for (int i = 1; i < shards; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            plan.get(lightest).add(testClass);
+            loads[lightest] += getDuration(testClass, durations, average);
+        }
+        return plan;
+    }
+
+    /**
+     * Reads the run time of every test class from the Surefire reports of a
+     * build. Reports that cannot be read or parsed are skipped.
+     * 
+     * @param reports the directory of the reports; it need not exist
+     * @return run times in seconds keyed by fully qualified class name
+     */
+    static Map<String, Double> readDurations(final File reports) {
+        final Map<String, Double> durations = new HashMap<String, Double>();
+        final File[] files = reports.listFiles();
+        if (files == null) {
+            return durations;
+        }
+        for (final File file : files) {
+            if (!file.getName().startsWith("TEST-")
+                    || !file.getName().endsWith(".xml")) {
+                continue;
+            }
+            InputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream(file);
+                final Element testSuite = XmlUtils.readXml(inputStream)
+                        .getDocumentElement();
+                final String time = testSuite.getAttribute("time").replace(
+                        ",", "");
+                if (time.length() > 0) {
+                    durations.put(testSuite.getAttribute("name"),
+                            Double.valueOf(time));
+                }
+            }
+            catch (final IOException e) {
+                LOGGER.fine("Could not read " + file + ": " + e.getMessage());
+            }
+            catch (final RuntimeException e) {
+                LOGGER.fine("Could not parse " + file + ": " + e.getMessage());
+            }
+            finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+        return durations;
+    }
+
+    private static double getDuration(final String testClass,
+            final Map<String, Double> durations, final double average) {
+        final Double duration = durations.get(testClass);
+        return duration == null ? average : duration;
+    }
+
+    private WebdriverShardPlanner() {
+    }
+}
@@ -0,0 +1,63 @@
+package cz.bcp.roo.webdriver;
+
+/**
+ * Counters of where the add-on spends its time inside the Roo shell: the
+ * calls and latency of its operations and metadata providers and the number
+ * of lookups they make. Recording is lock free, so the counters can stay on
+ * in large projects.
+ *
+ * @since 1.1
+ */
+public interface WebdriverStatistics {
+
+    String METADATA_SERVICE_CALLS = "MetadataService calls";
+    String TYPE_LOCATION_SERVICE_CALLS = "TypeLocationService calls";
+    String MEMBER_DETAILS_SCANNER_CALLS = "MemberDetailsScanner calls";
+    String WEB_METADATA_SERVICE_CALLS = "WebMetadataService calls";
+    String NOTIFICATIONS_RECEIVED = "Notifications received";
+    String NOTIFICATIONS_ACTED_UPON = "Notifications acted upon";
+    String FIELD_CACHE_HITS = "Field cache hits";
+    String FIELD_CACHE_MISSES = "Field cache misses";
+    String VIEWS_PARSED = "Views parsed";
+
+    /**
+     * Records a call of the given operation.
+     *
+     * @param operation the name of the operation
+     * @param startNanos the {@link System#nanoTime()} the call started at
+     */
+    void record(String operation, long startNanos);
+
+    /**
+     * Adds to the given counter.
+     *
+     * @param counter the name of the counter, e.g.
+     *            {@link #METADATA_SERVICE_CALLS}
+     * @param delta the amount to add
+     */
+    void count(String counter, long delta);
+
+    /**
+     * Wraps the given service so that every call of it adds one to the given
+     * counter. Components wrap the services they look types and metadata up
+     * with once, on activation, so no lookup goes uncounted.
+     *
+     * @param serviceInterface the interface the service is used through
+     * @param service the service to wrap (required)
+     * @param counter the name of the counter, e.g.
+     *            {@link #METADATA_SERVICE_CALLS}
+     * @return a non-<code>null</code> service delegating to the given one
+     */
+    <T> T counting(Class<T> serviceInterface, T service, String counter);
+
+    /**
+     * @return a table of all operations and counters recorded since the last
+     *         reset
+     */
+    String getReport();
+
+    /**
+     * Clears all operations and counters.
+     */
+    void reset();
+}
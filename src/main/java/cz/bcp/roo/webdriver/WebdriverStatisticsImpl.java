@@ -0,0 +1,125 @@
+package cz.bcp.roo.webdriver;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Service;
+
+/**
+ * Implementation of {@link WebdriverStatistics} keeping every operation and
+ * counter in atomic longs, created on first use.
+ *
+ * @since 1.1
+ */
+@Component
+@Service
+public class WebdriverStatisticsImpl implements WebdriverStatistics {
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+    public void record(final String operation, final long startNanos) {
+        final long nanos = System.nanoTime() - startNanos;
+        Timer timer = timers.get(operation);
+        if (timer == null) {
+            final Timer newTimer = new Timer();
+            timer = timers.putIfAbsent(operation, newTimer);
+            if (timer == null) {
+                timer = newTimer;
+            }
+        }
+        timer.record(nanos);
+    }
+
+    public void count(final String counter, final long delta) {
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            final AtomicLong newValue = new AtomicLong();
+            value = counters.putIfAbsent(counter, newValue);
+            if (value == null) {
+                value = newValue;
+            }
+        }
+        value.addAndGet(delta);
+    }
+
+    public <T> T counting(final Class<T> serviceInterface, final T service, final String counter) {
+        Validate.notNull(service, "Service required");
+        if (Proxy.isProxyClass(service.getClass()) && Proxy.getInvocationHandler(service) instanceof CountingHandler) {
+            // Already counted, e.g. on a second activation
+            return service;
+        }
+        return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(),
+                new Class<?>[] { serviceInterface }, new CountingHandler(service, counter)));
+    }
+
+    public String getReport() {
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format("%-36s %10s %12s %10s %10s%n", "Operation", "Calls", "Total ms", "Avg ms", "Max ms"));
+        for (final Map.Entry<String, Timer> entry : new TreeMap<String, Timer>(timers).entrySet()) {
+            final Timer timer = entry.getValue();
+            final long calls = timer.calls.get();
+            final double totalMillis = timer.totalNanos.get() / 1e6;
+            report.append(String.format("%-36s %10d %12.1f %10.2f %10.2f%n", entry.getKey(), calls, totalMillis,
+                    calls == 0 ? 0 : totalMillis / calls, timer.maxNanos.get() / 1e6));
+        }
+        report.append(String.format("%n%-36s %10s%n", "Counter", "Value"));
+        for (final Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(counters).entrySet()) {
+            report.append(String.format("%-36s %10d%n", entry.getKey(), entry.getValue().get()));
+        }
+        return report.toString();
+    }
+
+    public void reset() {
+        timers.clear();
+        counters.clear();
+    }
+
+    private final class CountingHandler implements InvocationHandler {
+
+        private final Object service;
+        private final String counter;
+
+        CountingHandler(final Object service, final String counter) {
+            this.service = service;
+            this.counter = counter;
+        }
+
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getDeclaringClass() != Object.class) {
+                count(counter, 1);
+            }
+            try {
+                return method.invoke(service, args);
+            }
+            catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class Timer {
+
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(final long nanos) {
+            calls.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package cz.bcp.roo.webdriver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Options controlling the shape of a generated WebDriver test. Instances are
+ * populated from the shell command options and passed down to
+ * {@link WebdriverOperations}.
+ *
+ * @since 1.1
+ */
+public class WebdriverTestOptions {
+
+    public static final int DEFAULT_TIMEOUT = 5;
+    public static final long DEFAULT_POLL_INTERVAL = 500;
+    public static final int DEFAULT_RECORDS = 1;
+
+    private int timeout = DEFAULT_TIMEOUT;
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+    private boolean pooled = true;
+    private WebdriverDriverType driverType = WebdriverDriverType.FIREFOX;
+    private boolean threadSafe;
+    private boolean scriptedFill;
+    private boolean timed;
+    private int records = DEFAULT_RECORDS;
+    private boolean journey;
+    private boolean lean;
+    private List<String> blockedUrls = Collections.emptyList();
+
+    /**
+     * @return how many seconds the generated test waits for a result element
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(final int timeout) {
+        Validate.isTrue(timeout > 0, "Timeout must be positive");
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return how many milliseconds the generated test sleeps between two
+     *         checks of a result element
+     */
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(final long pollInterval) {
+        Validate.isTrue(pollInterval > 0, "Poll interval must be positive");
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * @return whether the generated test borrows its browser session from the
+     *         module's driver pool instead of launching its own browser
+     */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public void setPooled(final boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * @return the browser the generated test runs against
+     */
+    public WebdriverDriverType getDriverType() {
+        return driverType;
+    }
+
+    public void setDriverType(final WebdriverDriverType driverType) {
+        Validate.notNull(driverType, "Driver type required");
+        this.driverType = driverType;
+    }
+
+    /**
+     * @return whether the generated test confines its driver to the running
+     *         thread so it can be executed by parallel Surefire threads
+     */
+    public boolean isThreadSafe() {
+        return threadSafe;
+    }
+
+    public void setThreadSafe(final boolean threadSafe) {
+        this.threadSafe = threadSafe;
+    }
+
+    /**
+     * @return whether the generated test fills the create form with a single
+     *         injected script instead of typing into every input
+     */
+    public boolean isScriptedFill() {
+        return scriptedFill;
+    }
+
+    public void setScriptedFill(final boolean scriptedFill) {
+        this.scriptedFill = scriptedFill;
+    }
+
+    /**
+     * @return whether the generated test records the duration of each of its
+     *         steps into the module's timing reports
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public void setTimed(final boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * @return how many records of the entity's DataOnDemand the generated
+     *         test submits in one browser session; 1 submits the fixed test
+     *         values only
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    public void setRecords(final int records) {
+        Validate.isTrue(records > 0, "At least one record is required");
+        this.records = records;
+    }
+
+    /**
+     * @return whether the generated test goes on from the created record to
+     *         the list page and updates and deletes it, as far as the
+     *         controller allows, in the same browser session
+     */
+    public boolean isJourney() {
+        return journey;
+    }
+
+    public void setJourney(final boolean journey) {
+        this.journey = journey;
+    }
+
+    /**
+     * @return whether the generated test runs in a browser session that loads
+     *         no images, fonts or blocked URLs
+     */
+    public boolean isLean() {
+        return lean;
+    }
+
+    public void setLean(final boolean lean) {
+        this.lean = lean;
+    }
+
+    /**
+     * @return the URL patterns, with "*" matching any text, a lean session
+     *         does not load; an unmodifiable list
+     */
+    public List<String> getBlockedUrls() {
+        return blockedUrls;
+    }
+
+    public void setBlockedUrls(final List<String> blockedUrls) {
+        Validate.notNull(blockedUrls, "Blocked URLs required");
+        this.blockedUrls = Collections.unmodifiableList(new ArrayList<String>(blockedUrls));
+    }
+
+    @Override
+    public String toString() {
+        final ToStringBuilder builder = new ToStringBuilder(this);
+        builder.append("timeout", timeout);
+        builder.append("pollInterval", pollInterval);
+        builder.append("pooled", pooled);
+        builder.append("driverType", driverType);
+        builder.append("threadSafe", threadSafe);
+        builder.append("scriptedFill", scriptedFill);
+        builder.append("timed", timed);
+        builder.append("records", records);
+        builder.append("journey", journey);
+        builder.append("lean", lean);
+        builder.append("blockedUrls", blockedUrls);
+        return builder.toString();
+    }
+}
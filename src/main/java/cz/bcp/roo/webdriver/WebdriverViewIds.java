@@ -0,0 +1,127 @@
+package cz.bcp.roo.webdriver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * The ids of the elements the JSPX views of a scaffolded controller actually
+ * render for the fields of its form backing object, as found by the
+ * {@link WebdriverLocatorIndex}. Ids of a view that could not be indexed are
+ * guessed by {@link WebdriverElementIds}.
+ *
+ * @since 1.1
+ */
+public final class WebdriverViewIds {
+
+    /**
+     * No view is indexed, so every id is guessed.
+     */
+    public static final WebdriverViewIds NONE = new WebdriverViewIds(
+            Collections.<String, Map<String, String>> emptyMap());
+
+    static final String CREATE_VIEW = "create";
+    static final String SHOW_VIEW = "show";
+
+    private final Map<String, Map<String, String>> fieldIdsByView;
+
+    /**
+     * Constructor
+     *
+     * @param fieldIdsByView the ids of the element rendered for each field,
+     *            keyed by field name, of each indexed view, keyed by view
+     *            name (e.g. <code>show</code>)
+     */
+    WebdriverViewIds(final Map<String, Map<String, String>> fieldIdsByView) {
+        Validate.notNull(fieldIdsByView, "Field ids required");
+        this.fieldIdsByView = Collections.unmodifiableMap(new HashMap<String, Map<String, String>>(fieldIdsByView));
+    }
+
+    /**
+     * Returns the id of the input the field is edited with on the create
+     * form.
+     *
+     * @return the id, or <code>null</code> if the form has no input for it
+     */
+    public String getInputId(final FieldMetadata field) {
+        return getId(CREATE_VIEW, field, WebdriverElementIds.getInputId(field));
+    }
+
+    /**
+     * Returns the id of the element the field's value is displayed in on the
+     * show page.
+     *
+     * @return the id, or <code>null</code> if the page does not display it
+     */
+    public String getResultId(final JavaType formBackingType, final FieldMetadata field) {
+        return getId(SHOW_VIEW, field, WebdriverElementIds.getResultId(formBackingType, field));
+    }
+
+    /**
+     * Returns the given fields that have an input on the create form.
+     */
+    public List<FieldMetadata> getInputFields(final List<FieldMetadata> fields) {
+        final List<FieldMetadata> inputFields = new ArrayList<FieldMetadata>();
+        for (final FieldMetadata field : fields) {
+            if (getInputId(field) != null) {
+                inputFields.add(field);
+            }
+        }
+        return inputFields;
+    }
+
+    /**
+     * Returns the given fields that are displayed on the show page.
+     */
+    public List<FieldMetadata> getResultFields(final JavaType formBackingType, final List<FieldMetadata> fields) {
+        final List<FieldMetadata> resultFields = new ArrayList<FieldMetadata>();
+        for (final FieldMetadata field : fields) {
+            if (getResultId(formBackingType, field) != null) {
+                resultFields.add(field);
+            }
+        }
+        return resultFields;
+    }
+
+    /**
+     * Describes every field whose element is missing from the indexed views
+     * or has another id than Roo's scaffold would give it.
+     *
+     * @return a message per mismatch; empty if the views match the fields
+     */
+    public List<String> getMismatches(final JavaType formBackingType, final List<FieldMetadata> fields) {
+        final List<String> mismatches = new ArrayList<String>();
+        for (final FieldMetadata field : fields) {
+            addMismatch(mismatches, CREATE_VIEW, field, "input", getInputId(field), WebdriverElementIds.getInputId(field));
+            addMismatch(mismatches, SHOW_VIEW, field, "output", getResultId(formBackingType, field),
+                    WebdriverElementIds.getResultId(formBackingType, field));
+        }
+        return mismatches;
+    }
+
+    private void addMismatch(final List<String> mismatches, final String view, final FieldMetadata field,
+            final String element, final String id, final String scaffoldId) {
+        final String fieldName = field.getFieldName().getSymbolName();
+        if (id == null) {
+            mismatches.add(view + ".jspx has no " + element + " for field '" + fieldName + "'; it is left out of the test");
+        }
+        else if (!id.equals(scaffoldId)) {
+            mismatches.add(view + ".jspx renders the " + element + " of field '" + fieldName + "' as '" + id
+                    + "' instead of '" + scaffoldId + "'");
+        }
+    }
+
+    private String getId(final String view, final FieldMetadata field, final String scaffoldId) {
+        final Map<String, String> fieldIds = fieldIdsByView.get(view);
+        if (fieldIds == null) {
+            return scaffoldId;
+        }
+        return fieldIds.get(field.getFieldName().getSymbolName());
+    }
+}
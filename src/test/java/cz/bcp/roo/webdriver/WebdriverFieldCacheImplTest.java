@@ -0,0 +1,98 @@
+package cz.bcp.roo.webdriver;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link WebdriverFieldCacheImpl}
+ */
+public class WebdriverFieldCacheImplTest {
+
+    private static final JavaType PERSON = new JavaType("com.foo.Person");
+    private static final JavaType ADDRESS = new JavaType("com.foo.Address");
+
+    private WebdriverFieldCacheImpl fieldCache;
+    private ClassOrInterfaceTypeDetails person;
+
+    @Before
+    public void setUp() throws Exception {
+        fieldCache = new WebdriverFieldCacheImpl();
+        final Field statistics = WebdriverFieldCacheImpl.class
+                .getDeclaredField("statistics");
+        statistics.setAccessible(true);
+        statistics.set(fieldCache, new WebdriverStatisticsImpl());
+        person = getTypeDetails(PERSON);
+    }
+
+    @Test
+    public void testAnalysisOfTheSameTypeDetailsIsCached() {
+        final WebdriverFieldAnalysis analysis = getAnalysis(person);
+        fieldCache.put(analysis);
+
+        assertSame(analysis, fieldCache.get(person));
+    }
+
+    @Test
+    public void testAnalysisOfOtherTypeDetailsIsStale() {
+        fieldCache.put(getAnalysis(person));
+
+        assertNull(fieldCache.get(getTypeDetails(PERSON)));
+    }
+
+    @Test
+    public void testChangeOfTheFormBackingObjectEvictsItsAnalysis() {
+        fieldCache.put(getAnalysis(person));
+        fieldCache.evict(person.getDeclaredByMetadataId());
+
+        assertNull(fieldCache.get(person));
+    }
+
+    @Test
+    public void testChangeOfAFieldTypeEvictsTheAnalysesDependingOnIt() {
+        fieldCache.put(getAnalysis(person));
+        final ClassOrInterfaceTypeDetails company = getTypeDetails(new JavaType(
+                "com.foo.Company"));
+        final WebdriverFieldAnalysis companyAnalysis = new WebdriverFieldAnalysis(
+                company, null, Collections.<FieldMetadata> emptyList(),
+                Collections.<JavaType> emptySet());
+        fieldCache.put(companyAnalysis);
+
+        fieldCache.evict(getId(ADDRESS));
+
+        assertNull(fieldCache.get(person));
+        assertSame(companyAnalysis, fieldCache.get(company));
+    }
+
+    private static WebdriverFieldAnalysis getAnalysis(
+            final ClassOrInterfaceTypeDetails typeDetails) {
+        return new WebdriverFieldAnalysis(typeDetails, null,
+                Collections.<FieldMetadata> emptyList(),
+                Collections.singleton(ADDRESS));
+    }
+
+    private static ClassOrInterfaceTypeDetails getTypeDetails(
+            final JavaType type) {
+        return new ClassOrInterfaceTypeDetailsBuilder(getId(type),
+                Modifier.PUBLIC, type, PhysicalTypeCategory.CLASS).build();
+    }
+
+    private static String getId(final JavaType type) {
+        return PhysicalTypeIdentifier.createIdentifier(type,
+                LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+    }
+}
@@ -0,0 +1,94 @@
+package cz.bcp.roo.webdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test of {@link WebdriverFingerprints}
+ */
+public class WebdriverFingerprintsTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "target/"
+                + WebdriverFingerprints.FILE_NAME);
+    }
+
+    @Test
+    public void testFingerprintIsTheHexadecimalSha1OfTheInputs() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+                WebdriverFingerprints.fingerprint("abc"));
+    }
+
+    @Test
+    public void testRecordedFingerprintsAreStoredAndLoaded() {
+        final WebdriverFingerprints fingerprints = new WebdriverFingerprints(
+                file);
+        fingerprints.record("com.example.PersonTest", "1234");
+        fingerprints.store();
+
+        final WebdriverFingerprints loaded = new WebdriverFingerprints(file);
+        assertTrue(loaded.contains("com.example.PersonTest"));
+        assertTrue(loaded.matches("com.example.PersonTest", "1234"));
+        assertFalse(loaded.matches("com.example.PersonTest", "5678"));
+        assertFalse(loaded.contains("com.example.OtherTest"));
+    }
+
+    @Test
+    public void testUnmodifiedStoreIsNotWritten() {
+        new WebdriverFingerprints(file).store();
+
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testOnlyMatchingFingerprintsCountAsUnchanged() {
+        final WebdriverFingerprints fingerprints = new WebdriverFingerprints(
+                file);
+        fingerprints.record("com.example.PersonTest", "1234");
+
+        assertTrue(fingerprints.isUnchanged("com.example.PersonTest", "1234"));
+        assertFalse(fingerprints.isUnchanged("com.example.PersonTest", "5678"));
+        assertFalse(fingerprints.isUnchanged("com.example.OtherTest", "1234"));
+        assertEquals(1, fingerprints.getUnchangedCount());
+    }
+
+    @Test
+    public void testSourceIsEditedOnlyIfItDiffersFromTheOneWritten() {
+        final WebdriverFingerprints fingerprints = new WebdriverFingerprints(
+                file);
+        assertFalse(fingerprints.isEdited("com.example.PersonTest",
+                "class PersonTest {}"));
+
+        fingerprints.recordSource("com.example.PersonTest",
+                "class PersonTest {}");
+
+        assertFalse(fingerprints.isEdited("com.example.PersonTest",
+                "class PersonTest {}"));
+        assertTrue(fingerprints.isEdited("com.example.PersonTest",
+                "class PersonTest { int edited; }"));
+    }
+
+    @Test
+    public void testRecordingASourceLeavesTheInputsFingerprintAlone() {
+        final WebdriverFingerprints fingerprints = new WebdriverFingerprints(
+                file);
+        fingerprints.record("com.example.PersonTest", "1234");
+        fingerprints.recordSource("com.example.PersonTest",
+                "class PersonTest {}");
+
+        assertTrue(fingerprints.matches("com.example.PersonTest", "1234"));
+    }
+}
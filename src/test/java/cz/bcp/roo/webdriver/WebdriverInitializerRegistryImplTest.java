@@ -0,0 +1,201 @@
+package cz.bcp.roo.webdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.roo.model.JavaType.BOOLEAN_OBJECT;
+import static org.springframework.roo.model.JavaType.INT_OBJECT;
+import static org.springframework.roo.model.JavaType.LONG_PRIMITIVE;
+import static org.springframework.roo.model.JavaType.STRING;
+import static org.springframework.roo.model.JdkJavaType.BIG_DECIMAL;
+import static org.springframework.roo.model.JdkJavaType.DATE;
+import static org.springframework.roo.model.Jsr303JavaType.MIN;
+import static org.springframework.roo.model.Jsr303JavaType.PAST;
+import static org.springframework.roo.model.SpringJavaType.DATE_TIME_FORMAT;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link WebdriverInitializerRegistryImpl}
+ */
+public class WebdriverInitializerRegistryImplTest {
+
+    private static final JavaType ENTITY = new JavaType("com.example.Person");
+    private static final String DECLARED_BY = PhysicalTypeIdentifier
+            .createIdentifier(ENTITY,
+                    LogicalPath.getInstance(Path.SRC_MAIN_JAVA, ""));
+
+    private WebdriverInitializerRegistryImpl registry;
+
+    @Before
+    public void setUp() throws Exception {
+        registry = new WebdriverInitializerRegistryImpl();
+        final Field statistics = WebdriverInitializerRegistryImpl.class
+                .getDeclaredField("statistics");
+        statistics.setAccessible(true);
+        statistics.set(registry, new WebdriverStatisticsImpl());
+        registry.activate(null);
+    }
+
+    @Test
+    public void testBuiltInStrategiesAreLookedUpByFieldType() {
+        final AnnotationMetadataBuilder min = new AnnotationMetadataBuilder(
+                MIN);
+        min.addLongAttribute("value", 5L);
+
+        assertEquals("someName1",
+                registry.getInitializer(getField("name", STRING)));
+        assertEquals("5",
+                registry.getInitializer(getField("age", INT_OBJECT, min)));
+        assertEquals("1",
+                registry.getInitializer(getField("count", LONG_PRIMITIVE)));
+        assertEquals("1",
+                registry.getInitializer(getField("price", BIG_DECIMAL)));
+        assertEquals("false",
+                registry.getInitializer(getField("active", BOOLEAN_OBJECT)));
+    }
+
+    @Test
+    public void testFieldOfUnknownTypeGetsTheDefault() {
+        assertEquals(" ", registry.getInitializer(getField("colour",
+                new JavaType("com.example.Colour"))));
+    }
+
+    @Test
+    public void testEmailFieldGetsAnAddress() {
+        assertEquals("some@email.com",
+                registry.getInitializer(getField("email", STRING)));
+        assertEquals("some@email.com",
+                registry.getInitializer(getField("workEmail", STRING)));
+    }
+
+    @Test
+    public void testTypeStrategyPrecedesTheBuiltInOne() {
+        registry.bindStrategy(getStrategy("first", STRING));
+        registry.bindStrategy(getStrategy("second", STRING));
+
+        assertEquals("second",
+                registry.getInitializer(getField("name", STRING)));
+        assertEquals("1",
+                registry.getInitializer(getField("count", LONG_PRIMITIVE)));
+    }
+
+    @Test
+    public void testTypeStrategyReturningNullFallsBackToTheBuiltInOne() {
+        registry.bindStrategy(getStrategy(null, STRING));
+
+        assertEquals("someName1",
+                registry.getInitializer(getField("name", STRING)));
+    }
+
+    @Test
+    public void testFieldStrategyPrecedesEmailAndTypeStrategies() {
+        registry.bindStrategy(getStrategy("typed", STRING));
+        registry.bindStrategy(getStrategy("any"));
+
+        assertEquals("any",
+                registry.getInitializer(getField("email", STRING)));
+        assertEquals("any",
+                registry.getInitializer(getField("count", LONG_PRIMITIVE)));
+    }
+
+    @Test
+    public void testUnboundStrategyIsNoLongerConsulted() {
+        final WebdriverInitializerStrategy strategy = getStrategy("typed",
+                STRING);
+        registry.bindStrategy(strategy);
+        registry.unbindStrategy(strategy);
+
+        assertEquals("someName1",
+                registry.getInitializer(getField("name", STRING)));
+    }
+
+    @Test
+    public void testDateFormatIsCreatedOncePerStyle() throws Exception {
+        final FieldMetadata medium = getField("birthDate", DATE,
+                getDateTimeFormat("M-"), new AnnotationMetadataBuilder(PAST));
+        final FieldMetadata otherMedium = getField("joinDate", DATE,
+                getDateTimeFormat("M-"));
+        final FieldMetadata shortStyle = getField("leaveDate", DATE,
+                getDateTimeFormat("S-"));
+
+        registry.getInitializer(medium);
+        final DateFormat mediumFormat = getDateFormats().get("M-");
+        registry.getInitializer(otherMedium);
+        registry.getInitializer(shortStyle);
+        registry.getInitializer(medium);
+
+        assertEquals(2, getDateFormats().size());
+        assertSame(mediumFormat, getDateFormats().get("M-"));
+    }
+
+    @Test
+    public void testPastDateIsFormattedInTheFieldsStyle()
+            throws ParseException {
+        final String initializer = registry.getInitializer(getField(
+                "birthDate", DATE, getDateTimeFormat("M-"),
+                new AnnotationMetadataBuilder(PAST)));
+
+        final Date date = DateFormat.getDateInstance(DateFormat.MEDIUM)
+                .parse(initializer);
+        assertTrue(date.before(new Date()));
+    }
+
+    private static FieldMetadata getField(final String name,
+            final JavaType type, final AnnotationMetadataBuilder... annotations) {
+        return new FieldMetadataBuilder(DECLARED_BY, Modifier.PRIVATE,
+                new ArrayList<AnnotationMetadataBuilder>(
+                        Arrays.asList(annotations)),
+                new JavaSymbolName(name), type).build();
+    }
+
+    private static AnnotationMetadataBuilder getDateTimeFormat(
+            final String style) {
+        final AnnotationMetadataBuilder dateTimeFormat = new AnnotationMetadataBuilder(
+                DATE_TIME_FORMAT);
+        dateTimeFormat.addStringAttribute("style", style);
+        return dateTimeFormat;
+    }
+
+    private static WebdriverInitializerStrategy getStrategy(
+            final String initializer, final JavaType... fieldTypes) {
+        return new WebdriverInitializerStrategy() {
+            public Collection<JavaType> getFieldTypes() {
+                return fieldTypes.length == 0 ? Collections
+                        .<JavaType> emptyList() : Arrays.asList(fieldTypes);
+            }
+
+            public String getInitializer(final FieldMetadata field) {
+                return initializer;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, DateFormat> getDateFormats() throws Exception {
+        final Field dateFormats = WebdriverInitializerRegistryImpl.class
+                .getDeclaredField("dateFormats");
+        dateFormats.setAccessible(true);
+        return (Map<String, DateFormat>) dateFormats.get(registry);
+    }
+}
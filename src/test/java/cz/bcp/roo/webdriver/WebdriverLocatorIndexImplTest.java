@@ -0,0 +1,178 @@
+package cz.bcp.roo.webdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.roo.model.JavaType.BOOLEAN_OBJECT;
+import static org.springframework.roo.model.JavaType.STRING;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.PathResolver;
+import org.springframework.roo.project.ProjectOperations;
+
+/**
+ * Unit test of {@link WebdriverLocatorIndexImpl}
+ */
+public class WebdriverLocatorIndexImplTest {
+
+    private static final JavaType ENTITY = new JavaType("com.foo.Person");
+    private static final FieldMetadata NAME = getField("name", STRING);
+    private static final FieldMetadata ACTIVE = getField("active",
+            BOOLEAN_OBJECT);
+    private static final FieldMetadata NICKNAME = getField("nickname",
+            STRING);
+    private static final String VIEW_HEADER = "<div xmlns:jsp=\"http://java.sun.com/JSP/Page\""
+            + " xmlns:field=\"urn:jsptagdir:/WEB-INF/tags/form/fields\""
+            + " xmlns:form=\"urn:jsptagdir:/WEB-INF/tags/form\" version=\"2.0\">";
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private WebdriverLocatorIndexImpl locatorIndex;
+    private WebdriverStatisticsImpl statistics;
+    private File views;
+
+    @Before
+    public void setUp() throws Exception {
+        final File webapp = folder.newFolder("webapp");
+        views = new File(webapp, "WEB-INF/views/people");
+        final PathResolver pathResolver = mock(PathResolver.class);
+        when(pathResolver.getIdentifier(any(LogicalPath.class), anyString()))
+                .thenAnswer(new Answer<String>() {
+                    public String answer(final InvocationOnMock invocation) {
+                        return new File(webapp, (String) invocation
+                                .getArguments()[1]).getAbsolutePath();
+                    }
+                });
+        final ProjectOperations projectOperations = mock(ProjectOperations.class);
+        when(projectOperations.getPathResolver()).thenReturn(pathResolver);
+        statistics = new WebdriverStatisticsImpl();
+
+        locatorIndex = new WebdriverLocatorIndexImpl();
+        inject("projectOperations", projectOperations);
+        inject("statistics", statistics);
+        locatorIndex.activate(null);
+    }
+
+    @Test
+    public void testFieldTagsGiveTheIdsOfTheirElements() throws IOException {
+        writeView("create.jspx", VIEW_HEADER
+                + "<form:create id=\"fc_com_foo_Person\" modelAttribute=\"person\">"
+                + "<field:input field=\"name\" id=\"c_com_foo_Person_name\"/>"
+                + "<field:checkbox field=\"active\" id=\"c_com_foo_Person_active\"/>"
+                + "<field:input field=\"nickname\" id=\"c_com_foo_Person_nickname\" render=\"false\"/>"
+                + "</form:create></div>");
+        writeView("show.jspx", VIEW_HEADER
+                + "<field:display field=\"name\" id=\"s_com_foo_Person_name\" object=\"${person}\"/>"
+                + "</div>");
+
+        final WebdriverViewIds viewIds = getViewIds();
+
+        assertEquals("_name_id", viewIds.getInputId(NAME));
+        assertEquals("_active_id", viewIds.getInputId(ACTIVE));
+        assertNull(viewIds.getInputId(NICKNAME));
+        assertEquals("_s_com_foo_Person_name_name_id",
+                viewIds.getResultId(ENTITY, NAME));
+        assertNull(viewIds.getResultId(ENTITY, ACTIVE));
+    }
+
+    @Test
+    public void testElementsOutsideTheFieldTagsAreIgnored() throws IOException {
+        writeView("create.jspx", VIEW_HEADER
+                + "<input xmlns=\"http://www.w3.org/1999/xhtml\" id=\"_name_id\" field=\"name\"/>"
+                + "<form:create id=\"fc_com_foo_Person\" modelAttribute=\"person\"/>"
+                + "</div>");
+
+        assertNull(getViewIds().getInputId(NAME));
+    }
+
+    @Test
+    public void testIdsOfUnparsableViewsAreGuessed() throws IOException {
+        writeView("create.jspx", VIEW_HEADER + "<field:input field=\"name\"");
+
+        assertEquals("_nickname_id", getViewIds().getInputId(NICKNAME));
+    }
+
+    @Test
+    public void testAllIdsAreGuessedWithoutViews() {
+        assertSame(WebdriverViewIds.NONE, getViewIds());
+    }
+
+    @Test
+    public void testUnchangedViewsAreParsedOnce() throws IOException {
+        writeView("create.jspx", VIEW_HEADER
+                + "<field:input field=\"name\" id=\"c_com_foo_Person_name\"/>"
+                + "</div>");
+
+        getViewIds();
+        getViewIds();
+        assertEquals(1, getViewsParsed());
+
+        writeView("create.jspx", VIEW_HEADER
+                + "<field:input field=\"nickname\" id=\"c_com_foo_Person_nickname\"/>"
+                + "</div>");
+        final WebdriverViewIds viewIds = getViewIds();
+        assertEquals(2, getViewsParsed());
+        assertNull(viewIds.getInputId(NAME));
+        assertEquals("_nickname_id", viewIds.getInputId(NICKNAME));
+    }
+
+    private WebdriverViewIds getViewIds() {
+        return locatorIndex.getViewIds("", "people");
+    }
+
+    private void writeView(final String name, final String contents)
+            throws IOException {
+        FileUtils.writeStringToFile(new File(views, name), contents, "UTF-8");
+    }
+
+    private long getViewsParsed() {
+        for (final String line : statistics.getReport().split("\n")) {
+            if (line.startsWith(WebdriverStatistics.VIEWS_PARSED)) {
+                return Long.parseLong(line.substring(
+                        WebdriverStatistics.VIEWS_PARSED.length()).trim());
+            }
+        }
+        return 0;
+    }
+
+    private void inject(final String fieldName, final Object value)
+            throws Exception {
+        final Field field = WebdriverLocatorIndexImpl.class
+                .getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(locatorIndex, value);
+    }
+
+    private static FieldMetadata getField(final String name,
+            final JavaType type) {
+        return new FieldMetadataBuilder(
+                PhysicalTypeIdentifier.createIdentifier(ENTITY,
+                        LogicalPath.getInstance(Path.SRC_MAIN_JAVA, "")),
+                Modifier.PRIVATE, new ArrayList<AnnotationMetadataBuilder>(),
+                new JavaSymbolName(name), type).build();
+    }
+}
@@ -0,0 +1,137 @@
+package cz.bcp.roo.webdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test of {@link WebdriverShardPlanner}
+ */
+public class WebdriverShardPlannerTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLongestClassesArePlacedFirstIntoTheLightestShard() {
+        final Map<String, Double> durations = new HashMap<String, Double>();
+        durations.put("A", 5.0);
+        durations.put("B", 4.0);
+        durations.put("C", 3.0);
+        durations.put("D", 3.0);
+        durations.put("E", 1.0);
+
+        final List<List<String>> plan = WebdriverShardPlanner.plan(
+                Arrays.asList("E", "D", "C", "B", "A"), durations, 2);
+
+        assertEquals(Arrays.asList(Arrays.asList("A", "D"),
+                Arrays.asList("B", "C", "E")), plan);
+    }
+
+    @Test
+    public void testTiesAreBrokenByNameAndShardOrder() {
+        final Map<String, Double> durations = new HashMap<String, Double>();
+        durations.put("b", 2.0);
+        durations.put("a", 2.0);
+        durations.put("c", 2.0);
+
+        final List<List<String>> plan = WebdriverShardPlanner.plan(
+                Arrays.asList("b", "c", "a"), durations, 2);
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "c"),
+                Arrays.asList("b")), plan);
+    }
+
+    @Test
+    public void testClassesWithoutReportsTakeTheAverageDuration() {
+        final Map<String, Double> durations = new HashMap<String, Double>();
+        durations.put("A", 4.0);
+        durations.put("B", 2.0);
+
+        final List<List<String>> plan = WebdriverShardPlanner.plan(
+                Arrays.asList("A", "B", "C"), durations, 2);
+
+        assertEquals(Arrays.asList(Arrays.asList("A"),
+                Arrays.asList("C", "B")), plan);
+    }
+
+    @Test
+    public void testClassesAreDealtOutByNameWithoutAnyReport() {
+        final List<List<String>> plan = WebdriverShardPlanner.plan(
+                Arrays.asList("z", "x", "y"),
+                Collections.<String, Double> emptyMap(), 2);
+
+        assertEquals(Arrays.asList(Arrays.asList("x", "z"),
+                Arrays.asList("y")), plan);
+    }
+
+    @Test
+    public void testSurplusShardsStayEmpty() {
+        final List<List<String>> plan = WebdriverShardPlanner.plan(
+                Arrays.asList("A", "B"),
+                Collections.<String, Double> emptyMap(), 4);
+
+        assertEquals(4, plan.size());
+        assertEquals(Arrays.asList("A"), plan.get(0));
+        assertEquals(Arrays.asList("B"), plan.get(1));
+        assertTrue(plan.get(2).isEmpty());
+        assertTrue(plan.get(3).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAtLeastOneShardIsRequired() {
+        WebdriverShardPlanner.plan(Arrays.asList("A"),
+                Collections.<String, Double> emptyMap(), 0);
+    }
+
+    @Test
+    public void testReadDurationsOfTestSuiteReports() throws IOException {
+        final File reports = folder.newFolder("surefire-reports");
+        write(reports, "TEST-com.example.ATest.xml",
+                "<testsuite name=\"com.example.ATest\" time=\"1,234.5\" tests=\"1\"/>");
+        write(reports, "TEST-com.example.BTest.xml",
+                "<testsuite name=\"com.example.BTest\" time=\"0.25\" tests=\"2\"/>");
+
+        final Map<String, Double> durations = WebdriverShardPlanner
+                .readDurations(reports);
+
+        assertEquals(2, durations.size());
+        assertEquals(1234.5, durations.get("com.example.ATest"), 0);
+        assertEquals(0.25, durations.get("com.example.BTest"), 0);
+    }
+
+    @Test
+    public void testReadDurationsSkipsOtherAndUnusableReports()
+            throws IOException {
+        final File reports = folder.newFolder("surefire-reports");
+        write(reports, "com.example.ATest.txt", "Tests run: 1");
+        write(reports, "TEST-com.example.BTest.xml", "<testsuite name=");
+        write(reports, "TEST-com.example.CTest.xml",
+                "<testsuite name=\"com.example.CTest\" tests=\"1\"/>");
+
+        assertTrue(WebdriverShardPlanner.readDurations(reports).isEmpty());
+    }
+
+    @Test
+    public void testReadDurationsWithoutReports() {
+        assertTrue(WebdriverShardPlanner.readDurations(
+                new File(folder.getRoot(), "surefire-reports")).isEmpty());
+    }
+
+    private static void write(final File directory, final String name,
+            final String contents) throws IOException {
+        FileUtils.writeStringToFile(new File(directory, name), contents,
+                "UTF-8");
+    }
+}
@@ -0,0 +1,104 @@
+package cz.bcp.roo.webdriver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.roo.model.JavaType.STRING;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.classpath.details.FieldMetadata;
+import org.springframework.roo.classpath.details.FieldMetadataBuilder;
+import org.springframework.roo.classpath.details.annotations.AnnotationMetadataBuilder;
+import org.springframework.roo.model.JavaSymbolName;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+
+/**
+ * Unit test of {@link WebdriverViewIds} and {@link WebdriverElementIds}
+ */
+public class WebdriverViewIdsTest {
+
+    private static final JavaType ENTITY = new JavaType("com.foo.Person");
+    private static final FieldMetadata NAME = getField("name");
+    private static final FieldMetadata NICKNAME = getField("nickname");
+
+    @Test
+    public void testScaffoldIds() {
+        assertEquals("_name_id", WebdriverElementIds.getInputId(NAME));
+        assertEquals("_s_com_foo_Person_name_name_id",
+                WebdriverElementIds.getResultId(ENTITY, NAME));
+    }
+
+    @Test
+    public void testIdsOfViewsNotIndexedAreGuessed() {
+        assertEquals("_name_id", WebdriverViewIds.NONE.getInputId(NAME));
+        assertEquals("_s_com_foo_Person_name_name_id",
+                WebdriverViewIds.NONE.getResultId(ENTITY, NAME));
+        assertTrue(WebdriverViewIds.NONE.getMismatches(ENTITY,
+                Arrays.asList(NAME, NICKNAME)).isEmpty());
+    }
+
+    @Test
+    public void testIdsOfIndexedViewsAreTakenFromThem() {
+        final Map<String, String> createIds = new HashMap<String, String>();
+        createIds.put("name", "_fullName_id");
+        final Map<String, Map<String, String>> fieldIdsByView = new HashMap<String, Map<String, String>>();
+        fieldIdsByView.put(WebdriverViewIds.CREATE_VIEW, createIds);
+        final WebdriverViewIds viewIds = new WebdriverViewIds(fieldIdsByView);
+
+        assertEquals("_fullName_id", viewIds.getInputId(NAME));
+        assertNull(viewIds.getInputId(NICKNAME));
+        // The show view was not indexed
+        assertEquals("_s_com_foo_Person_nickname_nickname_id",
+                viewIds.getResultId(ENTITY, NICKNAME));
+    }
+
+    @Test
+    public void testFieldsMissingFromAViewAreLeftOut() {
+        final Map<String, Map<String, String>> fieldIdsByView = new HashMap<String, Map<String, String>>();
+        fieldIdsByView.put(WebdriverViewIds.CREATE_VIEW,
+                Collections.singletonMap("name", "_name_id"));
+        fieldIdsByView.put(WebdriverViewIds.SHOW_VIEW, Collections
+                .singletonMap("nickname",
+                        "_s_com_foo_Person_nickname_nickname_id"));
+        final WebdriverViewIds viewIds = new WebdriverViewIds(fieldIdsByView);
+        final List<FieldMetadata> fields = Arrays.asList(NAME, NICKNAME);
+
+        assertEquals(Arrays.asList(NAME), viewIds.getInputFields(fields));
+        assertEquals(Arrays.asList(NICKNAME),
+                viewIds.getResultFields(ENTITY, fields));
+    }
+
+    @Test
+    public void testMismatchesDescribeMissingAndRenamedElements() {
+        final Map<String, String> createIds = new HashMap<String, String>();
+        createIds.put("name", "_fullName_id");
+        final Map<String, Map<String, String>> fieldIdsByView = new HashMap<String, Map<String, String>>();
+        fieldIdsByView.put(WebdriverViewIds.CREATE_VIEW, createIds);
+        final WebdriverViewIds viewIds = new WebdriverViewIds(fieldIdsByView);
+
+        assertEquals(
+                Arrays.asList(
+                        "create.jspx renders the input of field 'name' as '_fullName_id' instead of '_name_id'",
+                        "create.jspx has no input for field 'nickname'; it is left out of the test"),
+                viewIds.getMismatches(ENTITY, Arrays.asList(NAME, NICKNAME)));
+    }
+
+    private static FieldMetadata getField(final String name) {
+        return new FieldMetadataBuilder(
+                PhysicalTypeIdentifier.createIdentifier(ENTITY,
+                        LogicalPath.getInstance(Path.SRC_MAIN_JAVA, "")),
+                Modifier.PRIVATE, new ArrayList<AnnotationMetadataBuilder>(),
+                new JavaSymbolName(name), STRING).build();
+    }
+}